@@ -0,0 +1,82 @@
+package Benchmarks;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+
+/*
+ * Runs the benchmarks with the GC profiler and prints a summary per run: ns per operation,
+ * Brainfuck commands executed per second and the allocation rate.
+ * The full JMH results are saved as JSON in benchmarks/results, so a later run can be compared
+ * against an earlier baseline, e.g. with any JMH result visualizer.
+ * Arguments are regular JMH options, e.g. "EngineBenchmark -p engine=ir,compiled" to narrow the run.
+ * Run it from the project directory with the classes of both modules and the jmh library on the
+ * class path; the JMH annotation processor must have run over this module.
+ */
+public class BenchmarkMain {
+    public static void main(String[] args) throws Exception {
+        Path results = Paths.get("benchmarks", "results",
+                LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json");
+        Files.createDirectories(results.getParent());
+
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(results.toString())
+                .build();
+        Collection<RunResult> runs = new Runner(options).run();
+
+        Map<Workload, Long> commands = new EnumMap<>(Workload.class);
+        System.out.println();
+        System.out.printf("%-45s %15s %18s %12s %12s%n", "benchmark", "ns/op", "commands/s", "MB/s alloc", "B/op alloc");
+        for (RunResult run : runs) {
+            BenchmarkParams params = run.getParams();
+            String benchmark = params.getBenchmark();
+            // Class.method without the package, followed by the parameter values
+            String name = benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1);
+            for (String key : params.getParamsKeys()) {
+                name += " " + params.getParam(key);
+            }
+
+            double nanos = run.getPrimaryResult().getScore();
+            String perSecond = "";
+            if (params.getParam("workload") != null) {
+                Workload workload = Workload.valueOf(params.getParam("workload"));
+                if (!commands.containsKey(workload)) {
+                    commands.put(workload, workload.commands());
+                }
+                perSecond = String.format("%.0f", commands.get(workload) * 1e9 / nanos);
+            }
+
+            System.out.printf("%-45s %15.0f %18s %12.1f %12.0f%n", name, nanos, perSecond,
+                    secondary(run, "gc.alloc.rate"), secondary(run, "gc.alloc.rate.norm"));
+        }
+        System.out.println("results saved to " + results);
+    }
+
+    // the GC profiler's results, whose labels carry a middle dot prefix in older JMH versions
+    private static double secondary(RunResult run, String label) {
+        for (Map.Entry<String, Result> result : run.getSecondaryResults().entrySet()) {
+            if (result.getKey().equals(label) || result.getKey().equals("\u00b7" + label)) {
+                return result.getValue().getScore();
+            }
+        }
+        return Double.NaN;
+    }
+}
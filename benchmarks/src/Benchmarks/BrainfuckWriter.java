@@ -0,0 +1,101 @@
+package Benchmarks;
+
+/*
+ * Emits Brainfuck source while tracking the data pointer, so generated workloads can address
+ * cells by number instead of counting > and < by hand.
+ * Every loop starts and ends on its loop cell, which keeps the tracked pointer exact.
+ */
+final class BrainfuckWriter {
+    private final StringBuilder code = new StringBuilder();
+    private int pointer = 0;
+
+    BrainfuckWriter at(int cell) {
+        while (pointer < cell) {
+            code.append('>');
+            pointer++;
+        }
+        while (pointer > cell) {
+            code.append('<');
+            pointer--;
+        }
+        return this;
+    }
+
+    BrainfuckWriter add(int cell, int delta) {
+        at(cell);
+        char c = delta > 0 ? '+' : '-';
+        for (int i = 0; i < Math.abs(delta); i++) {
+            code.append(c);
+        }
+        return this;
+    }
+
+    BrainfuckWriter clear(int cell) {
+        at(cell);
+        code.append("[-]");
+        return this;
+    }
+
+    BrainfuckWriter set(int cell, int value) {
+        return clear(cell).add(cell, value);
+    }
+
+    BrainfuckWriter output(int cell) {
+        at(cell);
+        code.append('.');
+        return this;
+    }
+
+    // runs body while the cell is nonzero; body may leave the pointer anywhere, it is moved back
+    BrainfuckWriter loop(int cell, Runnable body) {
+        at(cell);
+        code.append('[');
+        body.run();
+        at(cell);
+        code.append(']');
+        return this;
+    }
+
+    // adds source to every target and clears source
+    BrainfuckWriter moveTo(int source, int... targets) {
+        return loop(source, () -> {
+            add(source, -1);
+            for (int target : targets) {
+                add(target, 1);
+            }
+        });
+    }
+
+    // subtracts source from target, keeping source through temp
+    BrainfuckWriter subtract(int source, int target, int temp) {
+        loop(source, () -> add(source, -1).add(target, -1).add(temp, 1));
+        return moveTo(temp, source);
+    }
+
+    // target = source, keeping source through temp
+    BrainfuckWriter copy(int source, int target, int temp) {
+        clear(target);
+        moveTo(source, target, temp);
+        return moveTo(temp, source);
+    }
+
+    // runs body once if the cell is nonzero; the cell is cleared
+    BrainfuckWriter ifNonZero(int cell, Runnable body) {
+        return loop(cell, () -> {
+            body.run();
+            clear(cell);
+        });
+    }
+
+    // runs body once if the cell is zero, using flag as scratch; the cell is cleared
+    BrainfuckWriter ifZero(int cell, int flag, Runnable body) {
+        set(flag, 1);
+        ifNonZero(cell, () -> clear(flag));
+        return ifNonZero(flag, body);
+    }
+
+    @Override
+    public String toString() {
+        return code.toString();
+    }
+}
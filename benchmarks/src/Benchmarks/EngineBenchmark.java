@@ -0,0 +1,106 @@
+package Benchmarks;
+
+import Execution.BufferedInputSource;
+import Execution.BufferedOutputSink;
+import Execution.Budget;
+import Execution.BytecodeCompiler;
+import Execution.CellWidth;
+import Execution.CompiledProgram;
+import Execution.Engine;
+import Execution.EofPolicy;
+import Execution.FlushPolicy;
+import Execution.InputSource;
+import Execution.IrInterpreter;
+import Execution.Optimizer;
+import Execution.Program;
+import Execution.ReferenceInterpreter;
+import Execution.TapeMode;
+import Execution.TieredInterpreter;
+import Execution.TieringListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Runs every workload on every engine, measuring one complete run per operation.
+ * Parsing, optimization and compilation happen once in setUp, so the score is execution alone;
+ * the tiered engine starts cold in every run, as that is how it is used.
+ * All engines get the reference engine's tape, 30,000 wrapping byte cells.
+ * The forks run with jdk.incubator.vector, so scan loops use the Vector API as in production.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class EngineBenchmark {
+    private static final int MEMORY_SIZE = 30000;
+
+    @Param({"TESTING", "PROGRAM", "GAME_OF_LIFE", "PRIMES", "ECHO"})
+    public Workload workload;
+
+    @Param({"reference", "ir", "compiled", "tiered"})
+    public String engine;
+
+    private byte[] input;
+    private Program program;
+    private CompiledProgram compiled;
+    private final Engine reference = new ReferenceInterpreter();
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        input = workload.input();
+        // the reference engine runs the program one command at a time, the others as optimized
+        program = engine.equals("reference")
+                ? Program.parseCommands(workload.source())
+                : Optimizer.optimize(Program.parse(workload.source()));
+
+        switch (engine) {
+            case "compiled":
+                compiled = BytecodeCompiler.compile(program, TapeMode.WRAPPING, CellWidth.BYTE);
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Benchmark
+    public int run() {
+        output.reset();
+        InputSource in = new BufferedInputSource(new ByteArrayInputStream(input), EofPolicy.ZERO);
+        BufferedOutputSink out = new BufferedOutputSink(output, FlushPolicy.SIZE);
+
+        switch (engine) {
+            case "reference":
+                reference.execute(program, TapeMode.WRAPPING.newTape(MEMORY_SIZE, CellWidth.BYTE), in, out,
+                        Budget.unlimited());
+                break;
+            case "compiled":
+                compiled.execute(TapeMode.WRAPPING.newTape(MEMORY_SIZE, CellWidth.BYTE), in, out);
+                break;
+            case "tiered":
+                new TieredInterpreter(TieredInterpreter.DEFAULT_THRESHOLD, TieringListener.NONE)
+                        .execute(program, TapeMode.WRAPPING.newTape(MEMORY_SIZE, CellWidth.BYTE), in, out);
+                break;
+            default:
+                new IrInterpreter().execute(program, TapeMode.WRAPPING.newTape(MEMORY_SIZE, CellWidth.BYTE), in, out);
+                break;
+        }
+        return output.size();
+    }
+}
@@ -0,0 +1,87 @@
+package Benchmarks;
+
+import Execution.BufferedInputSource;
+import Execution.BufferedOutputSink;
+import Execution.CellWidth;
+import Execution.EofPolicy;
+import Execution.FlushPolicy;
+import Execution.IrInterpreter;
+import Execution.Optimizer;
+import Execution.Program;
+import Execution.TapeMode;
+import Translator.Lexer;
+import Translator.Parser;
+import Translator.Token;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Measures the Translator pipeline, Lexer -> Parser -> Brainfuck, on a generated source of the
+ * given number of statement blocks, and then running the generated code on the IR engine.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TranslatorBenchmark {
+    @Param({"10", "100", "1000"})
+    public int blocks;
+
+    private String source;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        source = source(blocks);
+    }
+
+    @Benchmark
+    public List<Token> lex() {
+        return new Lexer(source).tokenize();
+    }
+
+    @Benchmark
+    public String translate() {
+        return new Parser(new Lexer(source)).parse();
+    }
+
+    @Benchmark
+    public int translateAndRun() {
+        String brainfuck = new Parser(new Lexer(source)).parse();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new IrInterpreter().execute(Optimizer.optimize(Program.parse(brainfuck)),
+                TapeMode.WRAPPING.newTape(30000, CellWidth.BYTE),
+                new BufferedInputSource(new ByteArrayInputStream(new byte[0]), EofPolicy.ZERO, 1),
+                new BufferedOutputSink(output, FlushPolicy.EXIT));
+        return output.size();
+    }
+
+    // declares two variables, then repeats blocks of constant assignments and prints
+    // WHILE is left out, as the code the Translator generates for it does not terminate
+    static String source(int blocks) {
+        StringBuilder source = new StringBuilder("VAR a = 3\nVAR b = 4\n");
+        for (int i = 0; i < blocks; i++) {
+            source.append("a = ").append(i % 10).append('\n')
+                    .append("PRINT a\n")
+                    .append("b = ").append((i + 5) % 10).append('\n')
+                    .append("PRINT b\n");
+        }
+        return source.toString();
+    }
+}
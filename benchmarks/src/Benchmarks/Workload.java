@@ -0,0 +1,170 @@
+package Benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/*
+ * The programs the benchmarks run, each with the input it is fed.
+ * TESTING, PROGRAM and GAME_OF_LIFE are the programs bundled in src/BrainFuckPrograms.
+ * PRIMES is generated: it prints every prime up to 100 as a byte, testing each candidate by trial
+ * division with a counting remainder, which keeps it in tight nested loops.
+ * ECHO is ,[.,] over 1 MB of input, so it measures the I/O path rather than the loop dispatch.
+ * MANDELBROT runs benchmarks/programs/mandelbrot.b. The file is not redistributed with this
+ * project; put a copy of the well-known mandelbrot renderer there and pass -p workload=MANDELBROT.
+ * Paths are relative to the project directory, which is where the benchmarks are started from.
+ */
+public enum Workload {
+    TESTING,
+    PROGRAM,
+    GAME_OF_LIFE,
+    PRIMES,
+    ECHO,
+    MANDELBROT;
+
+    private static final int PRIME_LIMIT = 100;
+    private static final int ECHO_SIZE = 1 << 20;
+    private static final int MEMORY_SIZE = 30000;
+
+    // the program text with # comments removed, as all engines accept it
+    public String source() throws IOException {
+        switch (this) {
+            case TESTING:
+                return read(Paths.get("src/BrainFuckPrograms/Testing.bf"));
+            case PROGRAM:
+                return read(Paths.get("src/BrainFuckPrograms/program.bf"));
+            case GAME_OF_LIFE:
+                return read(Paths.get("src/BrainFuckPrograms/GameOfLife.bf"));
+            case PRIMES:
+                return primes(PRIME_LIMIT);
+            case ECHO:
+                return ",[.,]";
+            default:
+                Path file = Paths.get("benchmarks/programs/mandelbrot.b");
+                if (!Files.exists(file)) {
+                    throw new RuntimeException(file + " is not bundled, copy a mandelbrot renderer there first");
+                }
+                return read(file);
+        }
+    }
+
+    public byte[] input() {
+        switch (this) {
+            case GAME_OF_LIFE:
+                // toggle two cells, step three generations and quit
+                return "ab\ncd\n\n\nq\n".getBytes(StandardCharsets.US_ASCII);
+            case ECHO:
+                byte[] input = new byte[ECHO_SIZE];
+                for (int i = 0; i < input.length; i++) {
+                    input[i] = (byte) (i % 255 + 1); // no zero byte, which would end the loop
+                }
+                return input;
+            default:
+                return "abcxyz\n".getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    // number of Brainfuck commands one run executes, counted the way the reference engine steps
+    public long commands() throws IOException {
+        String program = source();
+        byte[] input = input();
+        int[] jumps = new int[program.length()];
+        int[] open = new int[program.length()];
+        int depth = 0;
+        for (int i = 0; i < program.length(); i++) {
+            if (program.charAt(i) == '[') {
+                open[depth++] = i;
+            } else if (program.charAt(i) == ']') {
+                jumps[i] = open[--depth];
+                jumps[jumps[i]] = i;
+            }
+        }
+
+        byte[] memory = new byte[MEMORY_SIZE];
+        int pointer = 0;
+        int inputPosition = 0;
+        long count = 0;
+        for (int PC = 0; PC < program.length(); PC++) {
+            switch (program.charAt(PC)) {
+                case '>':
+                    pointer = (pointer + 1) % MEMORY_SIZE;
+                    break;
+                case '<':
+                    pointer = (pointer - 1 + MEMORY_SIZE) % MEMORY_SIZE;
+                    break;
+                case '+':
+                    memory[pointer]++;
+                    break;
+                case '-':
+                    memory[pointer]--;
+                    break;
+                case '.':
+                    break;
+                case ',':
+                    memory[pointer] = inputPosition < input.length ? input[inputPosition++] : 0;
+                    break;
+                case '[':
+                    if (memory[pointer] == 0) {
+                        PC = jumps[PC];
+                    }
+                    break;
+                case ']':
+                    if (memory[pointer] != 0) {
+                        PC = jumps[PC];
+                    }
+                    break;
+                default:
+                    continue; // not a command
+            }
+            count++;
+        }
+        return count;
+    }
+
+    private static String read(Path file) throws IOException {
+        StringBuilder program = new StringBuilder();
+        boolean inComment = false;
+        for (byte b : Files.readAllBytes(file)) {
+            char c = (char) (b & 0xFF);
+            if (c == '#') {
+                inComment = true;
+            } else if (c == '\n') {
+                inComment = false;
+            } else if (!inComment) {
+                program.append(c);
+            }
+        }
+        return program.toString();
+    }
+
+    // prints every prime from 2 up to limit; limit must stay below 256 to fit a byte cell
+    static String primes(int limit) {
+        final int remaining = 0, candidate = 1, divisor = 2, divisors = 3, counter = 4, rest = 5,
+                difference = 6, composite = 7, flag = 8, temp = 9;
+        BrainfuckWriter bf = new BrainfuckWriter();
+
+        bf.set(candidate, 2).set(remaining, limit - 1);
+        bf.loop(remaining, () -> {
+            bf.clear(composite).set(divisor, 2);
+            // try every divisor from 2 to candidate - 1
+            bf.copy(candidate, divisors, temp).add(divisors, -2);
+            bf.loop(divisors, () -> {
+                // rest = candidate mod divisor, counting up to candidate and wrapping at divisor
+                bf.clear(rest).copy(candidate, counter, temp);
+                bf.loop(counter, () -> {
+                    bf.add(rest, 1);
+                    bf.copy(divisor, difference, temp).subtract(rest, difference, temp);
+                    bf.ifZero(difference, flag, () -> bf.clear(rest));
+                    bf.add(counter, -1);
+                });
+                bf.ifZero(rest, flag, () -> bf.set(composite, 1));
+                bf.add(divisor, 1).add(divisors, -1);
+            });
+            bf.ifZero(composite, flag, () -> bf.output(candidate));
+            bf.add(candidate, 1).add(remaining, -1);
+        });
+        return bf.toString();
+    }
+}
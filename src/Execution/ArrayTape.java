@@ -0,0 +1,190 @@
+package Execution;
+
+import java.util.Arrays;
+
+/*
+ * A fixed-size WRAPPING or BOUNDED tape kept in a single primitive array, which compiled code can
+ * index directly. There is one subclass per CellWidth.
+ * Both modes test every index against the tape size once; they only differ in what they do with
+ * an index that is out of range, so a WRAPPING tape pays for the modulo only when it really wraps.
+ */
+public abstract class ArrayTape implements Tape {
+    final TapeMode mode;
+    final int size;
+
+    ArrayTape(TapeMode mode, int size) {
+        this.mode = mode;
+        this.size = size;
+    }
+
+    static ArrayTape create(TapeMode mode, int size, CellWidth width) {
+        switch (width) {
+            case BYTE:
+                return new Bytes(mode, size);
+            case SHORT:
+                return new Shorts(mode, size);
+            default:
+                return new Ints(mode, size);
+        }
+    }
+
+    @Override
+    public TapeMode mode() {
+        return mode;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int move(int pointer, int delta) {
+        int index = pointer + delta;
+        if (index < 0 || index >= size) {
+            index = outside(index);
+        }
+        return index;
+    }
+
+    // slow path for an index that is not on the tape
+    final int outside(int index) {
+        if (mode == TapeMode.WRAPPING) {
+            return Math.floorMod(index, size);
+        }
+        throw outOfBounds(index, size);
+    }
+
+    // wraps an index that left the tape back around, like the modulo of the original interpreter
+    public static int wrap(int index, int size) {
+        if (index < 0 || index >= size) {
+            return Math.floorMod(index, size);
+        }
+        return index;
+    }
+
+    public static int check(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw outOfBounds(index, size);
+        }
+        return index;
+    }
+
+    // sets every cell back to zero, so that the tape can be used for another run
+    abstract void clear();
+
+    static RuntimeException outOfBounds(int index, int size) {
+        return new RuntimeException("Data pointer out of bounds: cell " + index + " on a tape of " + size + " cells");
+    }
+
+    static final class Bytes extends ArrayTape {
+        final byte[] cells;
+
+        Bytes(TapeMode mode, int size) {
+            super(mode, size);
+            this.cells = new byte[size];
+        }
+
+        @Override
+        void clear() {
+            Arrays.fill(cells, (byte) 0);
+        }
+
+        @Override
+        public CellWidth width() {
+            return CellWidth.BYTE;
+        }
+
+        @Override
+        public int get(int index) {
+            if (index < 0 || index >= size) index = outside(index);
+            return cells[index];
+        }
+
+        @Override
+        public void set(int index, int value) {
+            if (index < 0 || index >= size) index = outside(index);
+            cells[index] = (byte) value;
+        }
+
+        @Override
+        public void add(int index, int delta) {
+            if (index < 0 || index >= size) index = outside(index);
+            cells[index] = (byte) (cells[index] + delta);
+        }
+    }
+
+    static final class Shorts extends ArrayTape {
+        final short[] cells;
+
+        Shorts(TapeMode mode, int size) {
+            super(mode, size);
+            this.cells = new short[size];
+        }
+
+        @Override
+        void clear() {
+            Arrays.fill(cells, (short) 0);
+        }
+
+        @Override
+        public CellWidth width() {
+            return CellWidth.SHORT;
+        }
+
+        @Override
+        public int get(int index) {
+            if (index < 0 || index >= size) index = outside(index);
+            return cells[index];
+        }
+
+        @Override
+        public void set(int index, int value) {
+            if (index < 0 || index >= size) index = outside(index);
+            cells[index] = (short) value;
+        }
+
+        @Override
+        public void add(int index, int delta) {
+            if (index < 0 || index >= size) index = outside(index);
+            cells[index] = (short) (cells[index] + delta);
+        }
+    }
+
+    static final class Ints extends ArrayTape {
+        final int[] cells;
+
+        Ints(TapeMode mode, int size) {
+            super(mode, size);
+            this.cells = new int[size];
+        }
+
+        @Override
+        void clear() {
+            Arrays.fill(cells, 0);
+        }
+
+        @Override
+        public CellWidth width() {
+            return CellWidth.INT;
+        }
+
+        @Override
+        public int get(int index) {
+            if (index < 0 || index >= size) index = outside(index);
+            return cells[index];
+        }
+
+        @Override
+        public void set(int index, int value) {
+            if (index < 0 || index >= size) index = outside(index);
+            cells[index] = value;
+        }
+
+        @Override
+        public void add(int index, int delta) {
+            if (index < 0 || index >= size) index = outside(index);
+            cells[index] += delta;
+        }
+    }
+}
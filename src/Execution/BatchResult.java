@@ -0,0 +1,60 @@
+package Execution;
+
+// outcome of one BatchTask: the engine it ran on, its output, how long it took, how it ended and the error
+// if it did not complete
+public final class BatchResult {
+    private final BatchTask task;
+    private final String engine;
+    private final byte[] output;
+    private final long nanos;
+    private final ExecutionResult.Status status;
+    private final String error;
+
+    BatchResult(BatchTask task, String engine, byte[] output, long nanos, ExecutionResult.Status status, String error) {
+        this.task = task;
+        this.engine = engine;
+        this.output = output;
+        this.nanos = nanos;
+        this.status = status;
+        this.error = error;
+    }
+
+    public BatchTask getTask() {
+        return task;
+    }
+
+    // the name of the Engine that ran the program, null if it failed before one was picked
+    public String getEngine() {
+        return engine;
+    }
+
+    // everything the program wrote, also when it failed part way
+    public byte[] getOutput() {
+        return output;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    // a run stopped by one of its ExecutionLimits is not a success either
+    public boolean isSuccess() {
+        return status == ExecutionResult.Status.COMPLETED;
+    }
+
+    public ExecutionResult.Status getStatus() {
+        return status;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return task.getName() + ": " + (isSuccess() ? "ok"
+                : status == ExecutionResult.Status.FAILED ? "failed (" + error + ")" : status + " (" + error + ")")
+                + ", " + output.length + " bytes in " + nanos / 1000 + " us"
+                + (engine != null ? " on " + engine : "");
+    }
+}
@@ -0,0 +1,189 @@
+package Execution;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/*
+ * Runs many programs in parallel, each with its own tape, input and output buffer.
+ * By default every run gets a virtual thread; a bounded pool of platform threads can be used
+ * instead when the programs are CPU-bound and should not outnumber the cores.
+ * Output is collected in memory per run, so runs never contend on a shared stream, and results
+ * are returned in the order of the tasks.
+ */
+public class BatchRunner {
+    private final String engine;
+    private final EngineSelector selector;
+    private final TapeMode tapeMode;
+    private final int tapeSize;
+    private final CellWidth cellWidth;
+    private final TapeStorage tapeStorage;
+    private final EofPolicy eofPolicy;
+    private final int platformThreads;
+    private final ProgramCache cache;
+    private final ExecutionLimits limits;
+    private final PartialEvaluator evaluator;
+
+    // engine is the name of an Engine, or "auto" to let an EngineSelector pick one for every program
+    // platformThreads of 0 runs every task on a virtual thread
+    // programs that occur more than once in a batch are parsed and optimized once through the cache
+    // every run gets its own Budget of limits, so one runaway program cannot hold up the batch
+    // evaluator may be null; otherwise programs run from the end of their input-independent prefix
+    public BatchRunner(String engine, TapeMode tapeMode, int tapeSize, CellWidth cellWidth, TapeStorage tapeStorage,
+                       EofPolicy eofPolicy, int platformThreads, ProgramCache cache, ExecutionLimits limits,
+                       PartialEvaluator evaluator) {
+        if (!engine.equals("auto")) {
+            forName(engine); // rejects an unknown name before any task runs
+        }
+        this.engine = engine;
+        this.selector = new EngineSelector(TieredInterpreter.DEFAULT_THRESHOLD, TieringListener.NONE);
+        this.tapeMode = tapeMode;
+        this.tapeSize = tapeSize;
+        this.cellWidth = cellWidth;
+        this.tapeStorage = tapeStorage;
+        this.eofPolicy = eofPolicy;
+        this.platformThreads = platformThreads;
+        this.cache = cache;
+        this.limits = limits;
+        this.evaluator = evaluator;
+    }
+
+    public List<BatchResult> run(List<BatchTask> tasks) {
+        ExecutorService executor = platformThreads > 0
+                ? Executors.newFixedThreadPool(platformThreads)
+                : Executors.newVirtualThreadPerTaskExecutor();
+
+        try {
+            List<Future<BatchResult>> futures = new ArrayList<>(tasks.size());
+            for (BatchTask task : tasks) {
+                futures.add(executor.submit(() -> runTask(task)));
+            }
+
+            List<BatchResult> results = new ArrayList<>(tasks.size());
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    results.add(new BatchResult(tasks.get(i), null, new byte[0], 0, ExecutionResult.Status.FAILED,
+                            String.valueOf(e.getCause())));
+                }
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Batch interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private BatchResult runTask(BatchTask task) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        long start = System.nanoTime();
+        ExecutionResult.Status status = ExecutionResult.Status.COMPLETED;
+        String error = null;
+        // every run gets an engine of its own, as some of them keep state between runs
+        Engine engine = this.engine.equals("auto") ? null : forName(this.engine);
+
+        try (InputSource in = openInput(task);
+             BufferedOutputSink sink = new BufferedOutputSink(output, FlushPolicy.EXIT)) {
+            Program program;
+            if (engine != null && !engine.isOptimizing()) {
+                program = ProgramLoader.loadCommands(task.getProgram());
+            } else if (evaluator != null) {
+                program = cache.load(task.getProgram(), evaluator);
+            } else {
+                program = cache.load(task.getProgram());
+            }
+            if (engine == null) {
+                engine = selector.select(program, limits).getEngine();
+            }
+            Tape tape = tapeStorage.newTape(tapeMode, tapeSize, cellWidth);
+            Budget budget = limits.start();
+            OutputSink out = limits.isLimited() ? budget.limit(sink) : sink;
+
+            try {
+                engine.execute(program, tape, in, out, budget);
+            } finally {
+                // off-heap cells are freed as soon as the run is over, not when the tape is collected
+                if (tape instanceof MemoryTape) {
+                    ((MemoryTape) tape).close();
+                }
+            }
+        } catch (LimitExceededException e) {
+            status = e.getStatus();
+            error = e.getMessage();
+        } catch (IOException | RuntimeException e) {
+            // engines throw failed input and output as an UncheckedIOException
+            status = ExecutionResult.Status.FAILED;
+            error = e.getMessage();
+        }
+
+        return new BatchResult(task, engine != null ? engine.name() : null, output.toByteArray(),
+                System.nanoTime() - start, status, error);
+    }
+
+    private static Engine forName(String name) {
+        return Engine.forName(name, TieredInterpreter.DEFAULT_THRESHOLD, TieringListener.NONE);
+    }
+
+    private InputSource openInput(BatchTask task) throws IOException {
+        if (task.getInput() == null) {
+            return new BufferedInputSource(new ByteArrayInputStream(new byte[0]), eofPolicy, 1);
+        }
+        return new BufferedInputSource(FileChannel.open(task.getInput(), StandardOpenOption.READ), eofPolicy);
+    }
+
+    /*
+     * Reads the tasks of a batch from a directory or a manifest file.
+     * A directory yields one task per .bf file, using NAME.in next to NAME.bf as input if it exists.
+     * A manifest lists one task per line as "program [input]", with paths relative to the manifest;
+     * empty lines and lines starting with # are skipped.
+     */
+    public static List<BatchTask> loadTasks(Path source) throws IOException {
+        List<BatchTask> tasks = new ArrayList<>();
+
+        if (Files.isDirectory(source)) {
+            try (Stream<Path> files = Files.list(source)) {
+                files.filter(file -> file.getFileName().toString().endsWith(".bf"))
+                        .sorted()
+                        .forEach(program -> {
+                            String name = program.getFileName().toString();
+                            name = name.substring(0, name.length() - ".bf".length());
+                            Path input = program.resolveSibling(name + ".in");
+                            tasks.add(new BatchTask(name, program, Files.exists(input) ? input : null));
+                        });
+            }
+            return tasks;
+        }
+
+        Path base = source.toAbsolutePath().getParent();
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(source)) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split("\\s+");
+            if (parts.length > 2) {
+                throw new RuntimeException("Invalid manifest line " + lineNumber + ": " + line);
+            }
+            Path program = base.resolve(parts[0]);
+            Path input = parts.length > 1 ? base.resolve(parts[1]) : null;
+            tasks.add(new BatchTask(lineNumber + ":" + parts[0], program, input));
+        }
+        return tasks;
+    }
+}
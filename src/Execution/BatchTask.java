@@ -0,0 +1,34 @@
+package Execution;
+
+import java.nio.file.Path;
+
+// one program run of a batch: a program file and an optional input file
+public final class BatchTask {
+    private final String name;
+    private final Path program;
+    private final Path input;
+
+    public BatchTask(String name, Path program, Path input) {
+        this.name = name;
+        this.program = program;
+        this.input = input;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Path getProgram() {
+        return program;
+    }
+
+    // null when the program runs without input
+    public Path getInput() {
+        return input;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
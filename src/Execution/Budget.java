@@ -0,0 +1,128 @@
+package Execution;
+
+import java.io.IOException;
+
+/*
+ * The part of its ExecutionLimits one run has left.
+ * Instructions are counted as commands of the source, so every engine charges a run the same
+ * however far it optimized the program. Engines call tick at the end of every loop iteration with
+ * the cost the Program keeps for that loop, the number of commands in its source, so a run is charged
+ * for each iteration as if the whole loop body executed once. Loops that an engine runs in one go, a
+ * CLEAR or a SCAN, are charged for every iteration they stand for. Straight-line code outside loops
+ * is not charged, as it cannot run for long. That keeps the counting down to one subtraction per
+ * iteration: tick only takes a slow path when the fuel of the current slice runs out, which is where
+ * the instruction limit and the clock are checked. A run therefore stops within one slice of its
+ * limits.
+ * A run waiting for input does not tick, so the clock is also checked around reads by a
+ * TimedInputStream under the input of runs that can wait.
+ * Output bytes are counted by the OutputSink returned from limit.
+ */
+public final class Budget {
+    private static final long SLICE = 1 << 16;
+
+    private final long maxInstructions;
+    private final long maxOutputBytes;
+    private final long start = System.nanoTime();
+    private final long deadline;
+    private long charged = 0; // instructions of the finished slices
+    private long granted = 0;
+    private long fuel = 0;
+    private long outputBytes = 0;
+    final boolean limited;
+
+    Budget(ExecutionLimits limits) {
+        this.limited = limits.isLimited();
+        this.maxInstructions = limits.getMaxInstructions() > 0 ? limits.getMaxInstructions() : Long.MAX_VALUE;
+        this.maxOutputBytes = limits.getMaxOutputBytes() > 0 ? limits.getMaxOutputBytes() : Long.MAX_VALUE;
+        this.deadline = limits.getMaxMillis() > 0 ? start + limits.getMaxMillis() * 1_000_000 : Long.MAX_VALUE;
+        refill();
+    }
+
+    // a budget without limits, for running engines that always take one
+    public static Budget unlimited() {
+        return new Budget(ExecutionLimits.NONE);
+    }
+
+    // called by the engines and by compiled code at the ] of every loop iteration
+    public void tick(int cost) {
+        fuel -= cost;
+        if (fuel < 0) {
+            refill();
+        }
+    }
+
+    // charges many iterations at once, for loops that run without an engine stepping through them
+    void tick(long cost) {
+        fuel -= cost;
+        if (fuel < 0) {
+            refill();
+        }
+    }
+
+    // charges the iterations of a loop that stepped its cell of bits bits by step until it was zero,
+    // for a CLEAR that replaced the loop and zeroes the cell at once
+    void tickClear(int cell, int step, int cost, int bits) {
+        long iterations = ((long) -step * cell) & ((1L << bits) - 1);
+        tick(iterations * cost);
+    }
+
+    private void refill() {
+        charged += granted - fuel;
+        granted = 0;
+        fuel = 0;
+        if (charged > maxInstructions) {
+            throw new LimitExceededException(ExecutionResult.Status.INSTRUCTION_LIMIT,
+                    "instruction limit of " + maxInstructions + " reached");
+        }
+        checkTime();
+        // end the slice at the instruction limit, so the next tick past it comes back here
+        granted = Math.min(SLICE, maxInstructions - charged);
+        fuel = granted;
+    }
+
+    // stops the run if it is past its time limit
+    public void checkTime() {
+        if (deadline != Long.MAX_VALUE && System.nanoTime() - deadline > 0) {
+            throw new LimitExceededException(ExecutionResult.Status.TIME_LIMIT,
+                    "time limit of " + (deadline - start) / 1_000_000 + " ms reached");
+        }
+    }
+
+    // nanoseconds until the time limit, or Long.MAX_VALUE if the run has none
+    public long nanosLeft() {
+        return deadline == Long.MAX_VALUE ? Long.MAX_VALUE : Math.max(0, deadline - System.nanoTime());
+    }
+
+    public long instructions() {
+        return charged + granted - fuel;
+    }
+
+    // counts the bytes written through out and stops the run when it writes more than allowed
+    public OutputSink limit(OutputSink out) {
+        return new OutputSink() {
+            @Override
+            public void write(int b) throws IOException {
+                if (outputBytes == maxOutputBytes) {
+                    throw new LimitExceededException(ExecutionResult.Status.OUTPUT_LIMIT,
+                            "output limit of " + maxOutputBytes + " bytes reached");
+                }
+                outputBytes++;
+                out.write(b);
+            }
+
+            @Override
+            public void beforeInput() throws IOException {
+                out.beforeInput();
+            }
+
+            @Override
+            public void flush() throws IOException {
+                out.flush();
+            }
+        };
+    }
+
+    public ExecutionResult result(ExecutionResult.Status status, String message) {
+        return new ExecutionResult(status, instructions(), outputBytes, System.nanoTime() - start, message);
+    }
+}
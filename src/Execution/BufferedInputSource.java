@@ -0,0 +1,63 @@
+package Execution;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+
+/*
+ * An InputSource that reads raw bytes ahead in bulk from an InputStream or FileChannel.
+ * Bytes are passed on unchanged, so input above 127 is not mangled by charset decoding.
+ */
+public final class BufferedInputSource implements InputSource {
+    public static final int DEFAULT_BUFFER_SIZE = 65536;
+
+    private final InputStream in;
+    private final EofPolicy eofPolicy;
+    private final byte[] buffer;
+    private int position = 0;
+    private int limit = 0;
+    private boolean eof = false;
+
+    public BufferedInputSource(InputStream in, EofPolicy eofPolicy) {
+        this(in, eofPolicy, DEFAULT_BUFFER_SIZE);
+    }
+
+    public BufferedInputSource(InputStream in, EofPolicy eofPolicy, int bufferSize) {
+        this.in = in;
+        this.eofPolicy = eofPolicy;
+        this.buffer = new byte[bufferSize];
+    }
+
+    public BufferedInputSource(FileChannel channel, EofPolicy eofPolicy) {
+        this(Channels.newInputStream(channel), eofPolicy, DEFAULT_BUFFER_SIZE);
+    }
+
+    @Override
+    public int read(int current) throws IOException {
+        if (position == limit && !fill()) {
+            return eofPolicy.apply(current);
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    // reads whatever is available, so interactive input is handed over as soon as it is typed
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+        int n = in.read(buffer, 0, buffer.length);
+        if (n <= 0) {
+            eof = true;
+            return false;
+        }
+        position = 0;
+        limit = n;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
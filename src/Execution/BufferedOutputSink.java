@@ -0,0 +1,80 @@
+package Execution;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/*
+ * An OutputSink that collects raw bytes in a reusable buffer and writes them to an OutputStream or
+ * FileChannel in blocks, according to its FlushPolicy.
+ * Bytes are written unchanged, so output of cells above 127 is not re-encoded by a charset.
+ */
+public final class BufferedOutputSink implements OutputSink, Closeable {
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+    // the buffer of FlushPolicy.EXIT stops growing here, well before the largest array
+    public static final int MAX_BUFFER_SIZE = 1 << 28;
+
+    private final OutputStream out;
+    private final FlushPolicy policy;
+    private byte[] buffer;
+    private int count = 0;
+
+    public BufferedOutputSink(OutputStream out, FlushPolicy policy) {
+        this(out, policy, DEFAULT_BUFFER_SIZE);
+    }
+
+    public BufferedOutputSink(OutputStream out, FlushPolicy policy, int bufferSize) {
+        this.out = out;
+        this.policy = policy;
+        this.buffer = new byte[bufferSize];
+    }
+
+    public BufferedOutputSink(FileChannel channel, FlushPolicy policy) {
+        this(Channels.newOutputStream(channel), policy, DEFAULT_BUFFER_SIZE);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == buffer.length) {
+            if (policy == FlushPolicy.EXIT && buffer.length < MAX_BUFFER_SIZE) {
+                buffer = Arrays.copyOf(buffer, (int) Math.min((long) buffer.length * 2, MAX_BUFFER_SIZE));
+            } else {
+                writeBuffer();
+            }
+        }
+        buffer[count++] = (byte) b;
+
+        if (b == '\n' && policy == FlushPolicy.LINE) {
+            flush();
+        }
+    }
+
+    @Override
+    public void beforeInput() throws IOException {
+        if (policy == FlushPolicy.LINE || policy == FlushPolicy.INPUT) {
+            flush();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writeBuffer();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        out.close();
+    }
+
+    private void writeBuffer() throws IOException {
+        if (count > 0) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+}
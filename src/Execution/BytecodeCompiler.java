@@ -0,0 +1,449 @@
+package Execution;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import static Execution.ClassFileWriter.*;
+
+/*
+ * Compiles a Program into a JVM class, so that HotSpot can JIT it like any other Java code.
+ * Every loop becomes a real bytecode loop:
+ *   [ body ]  ->  goto test; body: ...; test: if (tape[pointer] != 0) goto body
+ * The generated class is defined as a hidden class through a Lookup on this package, so it can call
+ * the public helpers of the tapes and is unloaded together with its CompiledProgram.
+ *
+ * Code is specialized for the TapeMode and CellWidth it will run on. Fixed-size tapes are passed in
+ * as their byte[], short[] or int[] and indexed directly with the matching array instructions, so
+ * the generated code never checks the width. Only a WRAPPING tape pays for wrapping indexes, and a
+ * BOUNDED tape checks pointer moves while the JVM's own array bounds checks cover every access.
+ * An UNBOUNDED tape, and a fixed-size tape that does not keep its cells in an array such as a
+ * MemoryTape, is called through the Tape interface.
+ * On fixed-size tapes every balanced loop and every block inside a loop whose PointerRanges are
+ * known is compiled twice: a check at its entry runs the copy without any wrapping or move checks
+ * when all cells it can reach are on the tape, and the checked copy otherwise. Loops inside either
+ * copy are not split again, so nesting does not multiply the code.
+ *
+ * Compiled with metering, the end of every loop iteration and every CLEAR charge the Budget passed to
+ * run, like IrInterpreter does; otherwise the Budget argument is ignored and the loops carry no checks.
+ *
+ * HotSpot does not JIT methods over 8000 bytes of bytecode, so large loops are moved into methods of
+ * their own; each takes the same arguments as run and returns the updated data pointer.
+ */
+public final class BytecodeCompiler {
+    private static final String CLASS_NAME = "Execution/GeneratedProgram";
+    private static final String IO_DESCRIPTOR = "ILExecution/InputSource;LExecution/OutputSink;LExecution/Budget;)I";
+
+    // loops spanning more instructions than this are compiled into a method of their own
+    private static final int LOOP_METHOD_THRESHOLD = 256;
+    private static final int MAX_METHOD_LENGTH = 65535;
+
+    // locals of every generated method; SIZE only exists for array tapes
+    private static final int TAPE = 0;
+    private static final int POINTER = 1;
+    private static final int IN = 2;
+    private static final int OUT = 3;
+    private static final int BUDGET = 4;
+    private static final int SIZE = 5;
+
+    private final Program program;
+    private final TapeMode mode;
+    private final CellWidth width;
+    private final boolean metered;
+    private final boolean array;
+    private final int arrayLoad;
+    private final int arrayStore;
+    private final String descriptor;
+    private final ClassFileWriter writer = new ClassFileWriter(CLASS_NAME);
+    private final int[] frameLocals;
+    private final int wrap;
+    private final int check;
+    private final int get;
+    private final int set;
+    private final int add;
+    private final int move;
+    private final int read;
+    private final int write;
+    private final int beforeInput;
+    private final int tick;
+    private final int tickClear;
+    private final int scan;
+    private final PointerRanges ranges;
+    private int loopMethods = 0;
+    private int loopDepth = 0;
+    private boolean unchecked = false; // inside code whose range was checked on entry
+    private boolean fallback = false; // inside the checked copy, which is not split again
+
+    private BytecodeCompiler(Program program, TapeMode mode, CellWidth width, boolean metered, boolean array) {
+        this.program = program;
+        this.mode = mode;
+        this.width = width;
+        this.metered = metered;
+        this.array = array;
+        this.ranges = PointerRanges.analyze(program);
+        this.arrayLoad = width == CellWidth.BYTE ? BALOAD : width == CellWidth.SHORT ? SALOAD : IALOAD;
+        this.arrayStore = width == CellWidth.BYTE ? BASTORE : width == CellWidth.SHORT ? SASTORE : IASTORE;
+        String arrayType = width == CellWidth.BYTE ? "[B" : width == CellWidth.SHORT ? "[S" : "[I";
+        this.descriptor = "(" + (array ? arrayType : "LExecution/Tape;") + IO_DESCRIPTOR;
+        int input = writer.classRef("Execution/InputSource");
+        int output = writer.classRef("Execution/OutputSink");
+        int budget = writer.classRef("Execution/Budget");
+        if (array) {
+            this.frameLocals = new int[] {
+                    ITEM_OBJECT, writer.classRef(arrayType), ITEM_INTEGER, 0,
+                    ITEM_OBJECT, input, ITEM_OBJECT, output, ITEM_OBJECT, budget, ITEM_INTEGER, 0
+            };
+        } else {
+            this.frameLocals = new int[] {
+                    ITEM_OBJECT, writer.classRef("Execution/Tape"), ITEM_INTEGER, 0,
+                    ITEM_OBJECT, input, ITEM_OBJECT, output, ITEM_OBJECT, budget
+            };
+        }
+        this.wrap = writer.methodRef("Execution/ArrayTape", "wrap", "(II)I");
+        this.check = writer.methodRef("Execution/ArrayTape", "check", "(II)I");
+        this.get = writer.interfaceMethodRef("Execution/Tape", "get", "(I)I");
+        this.set = writer.interfaceMethodRef("Execution/Tape", "set", "(II)V");
+        this.add = writer.interfaceMethodRef("Execution/Tape", "add", "(II)V");
+        this.move = writer.interfaceMethodRef("Execution/Tape", "move", "(II)I");
+        this.read = writer.interfaceMethodRef("Execution/InputSource", "read", "(I)I");
+        this.write = writer.interfaceMethodRef("Execution/OutputSink", "write", "(I)V");
+        this.beforeInput = writer.interfaceMethodRef("Execution/OutputSink", "beforeInput", "()V");
+        this.tick = writer.methodRef("Execution/Budget", "tick", "(I)V");
+        this.tickClear = writer.methodRef("Execution/Budget", "tickClear", "(IIII)V");
+        this.scan = array
+                ? writer.methodRef("Execution/ScanLoops", "scan", "(" + arrayType + "IIIZLExecution/Budget;)I")
+                : writer.methodRef("Execution/ScanLoops", "scan", "(LExecution/Tape;IIILExecution/Budget;)I");
+    }
+
+    public static CompiledProgram compile(Program program, TapeMode mode, CellWidth width) {
+        return compile(program, mode, width, false);
+    }
+
+    // metered code charges its Budget for every loop iteration and can be run under ExecutionLimits
+    // the code indexes the array of an ArrayTape unless mode is UNBOUNDED
+    public static CompiledProgram compile(Program program, TapeMode mode, CellWidth width, boolean metered) {
+        return compile(program, mode, width, metered, mode != TapeMode.UNBOUNDED, 0, program.length);
+    }
+
+    // the same for the mode, width and kind of storage of tape
+    public static CompiledProgram compile(Program program, Tape tape, boolean metered) {
+        return compile(program, tape.mode(), tape.width(), metered, tape instanceof ArrayTape, 0, program.length);
+    }
+
+    // compiles the instructions [from, to), which must not contain half of a loop
+    static CompiledProgram compile(Program program, TapeMode mode, CellWidth width, boolean metered,
+                                   boolean array, int from, int to) {
+        BytecodeCompiler compiler = new BytecodeCompiler(program, mode, width, metered, array);
+        ClassFileWriter.MethodWriter run = compiler.newMethod("run");
+        compiler.emitRange(run, from, to);
+        run.op(ILOAD, POINTER);
+        run.op(IRETURN);
+        compiler.checkLength(run);
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup()
+                    .defineHiddenClass(compiler.writer.toByteArray(), true);
+            MethodType type = MethodType.methodType(int.class, compiler.tapeClass(),
+                    int.class, InputSource.class, OutputSink.class, Budget.class);
+            MethodHandle handle = lookup.findStatic(lookup.lookupClass(), "run", type);
+            // a range such as a hot loop of TieredInterpreter is only ever run, never executed
+            byte[] output = from == 0 && to == program.length ? program.output : null;
+            return new CompiledProgram(handle, mode, width, metered, array, output);
+        } catch (IllegalAccessException | NoSuchMethodException e) {
+            throw new RuntimeException("Could not load compiled program: " + e.getMessage(), e);
+        }
+    }
+
+    private Class<?> tapeClass() {
+        if (!array) {
+            return Tape.class;
+        }
+        return width == CellWidth.BYTE ? byte[].class : width == CellWidth.SHORT ? short[].class : int[].class;
+    }
+
+    private ClassFileWriter.MethodWriter newMethod(String name) {
+        ClassFileWriter.MethodWriter method = writer.method(name, descriptor, 8, frameLocals.length / 2, frameLocals);
+        if (array) {
+            method.op(ALOAD, TAPE);
+            method.op(ARRAYLENGTH);
+            method.op(ISTORE, SIZE);
+        }
+        return method;
+    }
+
+    private void checkLength(ClassFileWriter.MethodWriter method) {
+        if (method.length() > MAX_METHOD_LENGTH) {
+            throw new RuntimeException("Program too large to compile: a method needs "
+                    + method.length() + " bytes of bytecode");
+        }
+    }
+
+    private void emitRange(ClassFileWriter.MethodWriter method, int from, int to) {
+        int i = from;
+        while (i < to) {
+            if (program.opcodes[i] == OpCode.JUMP_IF_ZERO) {
+                int start = i;
+                int end = program.operands[i];
+                if (end - start > LOOP_METHOD_THRESHOLD) {
+                    emitLoopCall(method, start, end);
+                } else if (array && !unchecked && !fallback && ranges.isKnown(start)) {
+                    emitGuarded(method, ranges.low(start), ranges.high(start), () -> emitLoop(method, start, end));
+                } else {
+                    emitLoop(method, start, end);
+                }
+                i = end + 1;
+            } else if (PointerRanges.isBlock(program.opcodes[i])) {
+                int start = i;
+                int end = Math.min(ranges.blockEnd(i), to);
+                // a block outside of loops runs once, so checking it twice would not pay off
+                if (array && !unchecked && !fallback && loopDepth > 0 && ranges.isKnown(start)
+                        && checkedSteps(start, end) > 1) {
+                    emitGuarded(method, ranges.low(start), ranges.high(start), () -> emitBlock(method, start, end));
+                } else {
+                    emitBlock(method, start, end);
+                }
+                i = end;
+            } else {
+                emitInstruction(method, i);
+                i++;
+            }
+        }
+    }
+
+    // runs code unchecked if the cells from pointer + low to pointer + high are on the tape
+    private void emitGuarded(ClassFileWriter.MethodWriter method, int low, int high, Runnable code) {
+        ClassFileWriter.Label checked = method.newLabel();
+        ClassFileWriter.Label done = method.newLabel();
+        if (low < 0) {
+            method.op(ILOAD, POINTER);
+            method.pushInt(low);
+            method.op(IADD);
+            method.jump(IFLT, checked);
+        }
+        if (high > 0) {
+            method.op(ILOAD, POINTER);
+            method.pushInt(high);
+            method.op(IADD);
+            method.op(ILOAD, SIZE);
+            method.jump(IF_ICMPGE, checked);
+        }
+        unchecked = true;
+        code.run();
+        unchecked = false;
+        if (low < 0 || high > 0) {
+            method.jump(GOTO, done);
+            method.mark(checked);
+            fallback = true;
+            code.run();
+            fallback = false;
+            method.mark(done);
+        }
+    }
+
+    // the wraps and move checks that a block takes on this tape
+    private int checkedSteps(int from, int to) {
+        int steps = 0;
+        for (int i = from; i < to; i++) {
+            if (program.opcodes[i] == OpCode.MOVE
+                    || mode == TapeMode.WRAPPING && program.offsets[i] != 0) {
+                steps++;
+            }
+        }
+        return steps;
+    }
+
+    private void emitBlock(ClassFileWriter.MethodWriter method, int from, int to) {
+        for (int i = from; i < to; i++) {
+            emitInstruction(method, i);
+        }
+    }
+
+    private void emitInstruction(ClassFileWriter.MethodWriter method, int i) {
+        int operand = program.operands[i];
+        int offset = program.offsets[i];
+
+        switch (program.opcodes[i]) {
+            case OpCode.ADD:
+                emitAdd(method, offset, () -> method.pushInt(operand));
+                break;
+            case OpCode.MOVE:
+                emitMove(method, operand);
+                break;
+            case OpCode.OUTPUT:
+                method.op(ALOAD, OUT);
+                emitLoad(method, offset);
+                method.invoke(INVOKEINTERFACE, write, 1);
+                break;
+            case OpCode.INPUT:
+                method.op(ALOAD, OUT);
+                method.invoke(INVOKEINTERFACE, beforeInput, 0);
+                emitStore(method, offset, () -> {
+                    method.op(ALOAD, IN);
+                    emitLoad(method, offset);
+                    method.invoke(INVOKEINTERFACE, read, 1);
+                });
+                break;
+            case OpCode.CLEAR:
+                if (metered) {
+                    method.op(ALOAD, BUDGET);
+                    emitLoad(method, offset);
+                    method.pushInt(operand);
+                    method.pushInt(program.costs[i]);
+                    method.pushInt(width.bits());
+                    method.invoke(INVOKEVIRTUAL, tickClear, 4);
+                }
+                emitStore(method, offset, () -> method.op(ICONST_0));
+                break;
+            case OpCode.MUL_ADD:
+                // skipped on a zero cell, where the loop it came from would not have touched its neighbours
+                ClassFileWriter.Label skip = method.newLabel();
+                emitLoad(method, 0);
+                method.jump(IFEQ, skip);
+                emitAdd(method, offset, () -> {
+                    emitLoad(method, 0);
+                    method.pushInt(operand);
+                    method.op(IMUL);
+                });
+                method.mark(skip);
+                break;
+            case OpCode.SCAN:
+                method.op(ALOAD, TAPE);
+                method.op(ILOAD, POINTER);
+                method.pushInt(operand);
+                method.pushInt(program.costs[i]);
+                if (array) {
+                    method.pushInt(mode == TapeMode.WRAPPING ? 1 : 0);
+                }
+                if (metered) {
+                    method.op(ALOAD, BUDGET);
+                } else {
+                    method.op(ACONST_NULL);
+                }
+                method.invoke(INVOKESTATIC, scan, array ? 6 : 5);
+                method.op(ISTORE, POINTER);
+                break;
+            default:
+                throw new IllegalStateException("Unexpected " + OpCode.name(program.opcodes[i]) + " at " + i);
+        }
+    }
+
+    private void emitLoop(ClassFileWriter.MethodWriter method, int start, int end) {
+        ClassFileWriter.Label body = method.newLabel();
+        ClassFileWriter.Label test = method.newLabel();
+        method.jump(GOTO, test);
+        method.mark(body);
+        loopDepth++;
+        emitRange(method, start + 1, end);
+        loopDepth--;
+        if (metered) {
+            method.op(ALOAD, BUDGET);
+            method.pushInt(program.costs[end]);
+            method.invoke(INVOKEVIRTUAL, tick, 1);
+        }
+        method.mark(test);
+        emitLoad(method, 0);
+        method.jump(IFNE, body);
+    }
+
+    private void emitLoopCall(ClassFileWriter.MethodWriter method, int start, int end) {
+        String name = "loop" + loopMethods++;
+        ClassFileWriter.MethodWriter loop = newMethod(name);
+        emitLoop(loop, start, end);
+        loop.op(ILOAD, POINTER);
+        loop.op(IRETURN);
+        checkLength(loop);
+
+        method.op(ALOAD, TAPE);
+        method.op(ILOAD, POINTER);
+        method.op(ALOAD, IN);
+        method.op(ALOAD, OUT);
+        method.op(ALOAD, BUDGET);
+        method.invoke(INVOKESTATIC, writer.methodRef(CLASS_NAME, name, descriptor), 5);
+        method.op(ISTORE, POINTER);
+    }
+
+    // pushes the signed value of the cell at offset from the pointer
+    private void emitLoad(ClassFileWriter.MethodWriter method, int offset) {
+        method.op(ALOAD, TAPE);
+        emitIndex(method, offset);
+        if (array) {
+            method.op(arrayLoad);
+        } else {
+            method.invoke(INVOKEINTERFACE, get, 1);
+        }
+    }
+
+    // stores the int pushed by value into the cell at offset from the pointer
+    private void emitStore(ClassFileWriter.MethodWriter method, int offset, Runnable value) {
+        method.op(ALOAD, TAPE);
+        emitIndex(method, offset);
+        value.run();
+        if (array) {
+            emitTruncate(method);
+            method.op(arrayStore);
+        } else {
+            method.invoke(INVOKEINTERFACE, set, 2);
+        }
+    }
+
+    // adds the int pushed by delta to the cell at offset from the pointer
+    private void emitAdd(ClassFileWriter.MethodWriter method, int offset, Runnable delta) {
+        method.op(ALOAD, TAPE);
+        emitIndex(method, offset);
+        if (array) {
+            method.op(DUP2);
+            method.op(arrayLoad);
+            delta.run();
+            method.op(IADD);
+            emitTruncate(method);
+            method.op(arrayStore);
+        } else {
+            delta.run();
+            method.invoke(INVOKEINTERFACE, add, 2);
+        }
+    }
+
+    // narrows the int on the stack to the cell width; bastore and sastore would do it too, but
+    // keeping the value exact avoids relying on that
+    private void emitTruncate(ClassFileWriter.MethodWriter method) {
+        if (width == CellWidth.BYTE) {
+            method.op(I2B);
+        } else if (width == CellWidth.SHORT) {
+            method.op(I2S);
+        }
+    }
+
+    private void emitMove(ClassFileWriter.MethodWriter method, int delta) {
+        if (array && unchecked) {
+            method.op(ILOAD, POINTER);
+            method.pushInt(delta);
+            method.op(IADD);
+        } else if (array) {
+            method.op(ILOAD, POINTER);
+            method.pushInt(delta);
+            method.op(IADD);
+            method.op(ILOAD, SIZE);
+            method.invoke(INVOKESTATIC, mode == TapeMode.WRAPPING ? wrap : check, 2);
+        } else {
+            method.op(ALOAD, TAPE);
+            method.op(ILOAD, POINTER);
+            method.pushInt(delta);
+            method.invoke(INVOKEINTERFACE, move, 2);
+        }
+        method.op(ISTORE, POINTER);
+    }
+
+    // pushes the index of the cell at offset from the pointer; array tapes need it in range, which
+    // unchecked code already made sure of
+    private void emitIndex(ClassFileWriter.MethodWriter method, int offset) {
+        method.op(ILOAD, POINTER);
+        if (offset != 0) {
+            method.pushInt(offset);
+            method.op(IADD);
+            if (array && mode == TapeMode.WRAPPING && !unchecked) {
+                method.op(ILOAD, SIZE);
+                method.invoke(INVOKESTATIC, wrap, 2);
+            }
+        }
+    }
+}
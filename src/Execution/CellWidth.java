@@ -0,0 +1,27 @@
+package Execution;
+
+// number of bits in a tape cell; arithmetic on a cell wraps around modulo 2^bits
+public enum CellWidth {
+    BYTE(8),
+    SHORT(16),
+    INT(32);
+
+    private final int bits;
+
+    CellWidth(int bits) {
+        this.bits = bits;
+    }
+
+    public int bits() {
+        return bits;
+    }
+
+    public static CellWidth ofBits(int bits) {
+        for (CellWidth width : values()) {
+            if (width.bits == bits) {
+                return width;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported cell width: " + bits + " bits (use 8, 16 or 32)");
+    }
+}
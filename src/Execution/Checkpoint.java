@@ -0,0 +1,231 @@
+package Execution;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/*
+ * The complete state of a paused run: the tape, the data pointer, the program counter and how far
+ * the run had read its input and written its output.
+ * A checkpoint file is a fixed header followed by the tape cells, written and read through a
+ * memory-mapped buffer so that even a large tape is a single bulk copy:
+ *   magic, format version, SHA-256 of the optimized Program, TapeMode, cell bits, tape size,
+ *   data pointer, program counter, input position, output position, page count, cells
+ * A fixed-size tape stores all of its cells; an UNBOUNDED tape stores each allocated page as its
+ * page number followed by the cells of the page.
+ * The program counter indexes the optimized Program, so a checkpoint only resumes the exact program
+ * it was taken from; the hash makes sure of that.
+ */
+public final class Checkpoint {
+    private static final int MAGIC = 0x4246434B; // "BFCK"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HASH_SIZE = 32;
+    private static final int HEADER_SIZE = 4 + 4 + HASH_SIZE + 4 + 4 + 4 + 4 + 4 + 8 + 8 + 4;
+
+    private final byte[] programHash;
+    private final Tape tape;
+    private final int pointer;
+    private final int PC;
+    private final long inputPosition;
+    private final long outputPosition;
+
+    private Checkpoint(byte[] programHash, Tape tape, int pointer, int PC, long inputPosition, long outputPosition) {
+        this.programHash = programHash;
+        this.tape = tape;
+        this.pointer = pointer;
+        this.PC = PC;
+        this.inputPosition = inputPosition;
+        this.outputPosition = outputPosition;
+    }
+
+    // a new tape holding the cells of the checkpoint
+    public Tape getTape() {
+        return tape;
+    }
+
+    public int getPointer() {
+        return pointer;
+    }
+
+    public int getPC() {
+        return PC;
+    }
+
+    // number of , instructions the run had executed, end of input included
+    public long getInputPosition() {
+        return inputPosition;
+    }
+
+    // number of bytes the run had written
+    public long getOutputPosition() {
+        return outputPosition;
+    }
+
+    // throws unless the checkpoint was taken from program
+    public void checkProgram(Program program) {
+        if (!Arrays.equals(programHash, hash(program))) {
+            throw new RuntimeException("Checkpoint was taken from a different program");
+        }
+    }
+
+    // reads the input the run had already consumed, so that in continues where the checkpoint left it
+    public void skipInput(InputSource in) throws IOException {
+        for (long i = 0; i < inputPosition; i++) {
+            in.read(0);
+        }
+    }
+
+    public static Checkpoint read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new RuntimeException("Not a checkpoint file: " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC) {
+                throw new RuntimeException("Not a checkpoint file: " + file);
+            }
+            int version = buffer.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new RuntimeException("Unsupported checkpoint format version " + version + ": " + file);
+            }
+            byte[] programHash = new byte[HASH_SIZE];
+            buffer.get(programHash);
+            int mode = buffer.getInt();
+            if (mode < 0 || mode >= TapeMode.values().length) {
+                throw new RuntimeException("Corrupt checkpoint file: " + file);
+            }
+            TapeMode tapeMode = TapeMode.values()[mode];
+            CellWidth width = CellWidth.ofBits(buffer.getInt());
+            int size = buffer.getInt();
+            int pointer = buffer.getInt();
+            int PC = buffer.getInt();
+            long inputPosition = buffer.getLong();
+            long outputPosition = buffer.getLong();
+            int pages = buffer.getInt();
+
+            Tape tape = tapeMode.newTape(size, width);
+            try {
+                if (tape instanceof ArrayTape) {
+                    getCells(buffer, arrayOf(tape), size);
+                } else {
+                    SegmentedTape segmented = (SegmentedTape) tape;
+                    for (int i = 0; i < pages; i++) {
+                        int page = buffer.getInt();
+                        getCells(buffer, segmented.pageForWrite(page << SegmentedTape.PAGE_BITS),
+                                SegmentedTape.PAGE_SIZE);
+                    }
+                }
+            } catch (BufferUnderflowException e) {
+                throw new RuntimeException("Truncated checkpoint file: " + file);
+            }
+            return new Checkpoint(programHash, tape, pointer, PC, inputPosition, outputPosition);
+        }
+    }
+
+    /*
+     * Copies the state into a new file through a read-write mapping and returns the mapping, whose
+     * force the caller may do later: once the cells are copied the run can go on while the operating
+     * system writes them out.
+     */
+    static MappedByteBuffer write(Path file, byte[] programHash, Tape tape, int pointer, int PC,
+                                  long inputPosition, long outputPosition) throws IOException {
+        int cellBytes = tape.width().bits() / 8;
+        int size = 0;
+        int pages = 0;
+        long cells;
+        if (tape instanceof ArrayTape) {
+            size = ((ArrayTape) tape).size();
+            cells = (long) size * cellBytes;
+        } else {
+            for (Object page : ((SegmentedTape) tape).pages()) {
+                if (page != null) {
+                    pages++;
+                }
+            }
+            cells = (long) pages * (4 + SegmentedTape.PAGE_SIZE * cellBytes);
+        }
+        if (HEADER_SIZE + cells > Integer.MAX_VALUE) {
+            throw new RuntimeException("Tape too large for a checkpoint: " + cells + " bytes");
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + cells);
+            buffer.putInt(MAGIC);
+            buffer.putInt(FORMAT_VERSION);
+            buffer.put(programHash);
+            buffer.putInt(tape.mode().ordinal());
+            buffer.putInt(tape.width().bits());
+            buffer.putInt(size);
+            buffer.putInt(pointer);
+            buffer.putInt(PC);
+            buffer.putLong(inputPosition);
+            buffer.putLong(outputPosition);
+            buffer.putInt(pages);
+
+            if (tape instanceof ArrayTape) {
+                putCells(buffer, arrayOf(tape), size);
+            } else {
+                SegmentedTape segmented = (SegmentedTape) tape;
+                Object[] allocated = segmented.pages();
+                for (int slot = 0; slot < allocated.length; slot++) {
+                    if (allocated[slot] != null) {
+                        buffer.putInt(segmented.firstPage() + slot);
+                        putCells(buffer, allocated[slot], SegmentedTape.PAGE_SIZE);
+                    }
+                }
+            }
+            return buffer;
+        }
+    }
+
+    // identifies the optimized program, since program counters depend on its exact instructions
+    static byte[] hash(Program program) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(ProgramCache.encode(program));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 is not available", e);
+        }
+    }
+
+    private static Object arrayOf(Tape tape) {
+        if (tape instanceof ArrayTape.Bytes) {
+            return ((ArrayTape.Bytes) tape).cells;
+        } else if (tape instanceof ArrayTape.Shorts) {
+            return ((ArrayTape.Shorts) tape).cells;
+        }
+        return ((ArrayTape.Ints) tape).cells;
+    }
+
+    // bulk copies between a primitive cell array and the mapping, one cell width at a time
+    private static void putCells(ByteBuffer buffer, Object cells, int count) {
+        if (cells instanceof byte[]) {
+            buffer.put((byte[]) cells, 0, count);
+        } else if (cells instanceof short[]) {
+            buffer.asShortBuffer().put((short[]) cells, 0, count);
+            buffer.position(buffer.position() + count * 2);
+        } else {
+            buffer.asIntBuffer().put((int[]) cells, 0, count);
+            buffer.position(buffer.position() + count * 4);
+        }
+    }
+
+    private static void getCells(ByteBuffer buffer, Object cells, int count) {
+        if (cells instanceof byte[]) {
+            buffer.get((byte[]) cells, 0, count);
+        } else if (cells instanceof short[]) {
+            buffer.asShortBuffer().get((short[]) cells, 0, count);
+            buffer.position(buffer.position() + count * 2);
+        } else {
+            buffer.asIntBuffer().get((int[]) cells, 0, count);
+            buffer.position(buffer.position() + count * 4);
+        }
+    }
+}
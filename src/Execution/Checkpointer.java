@@ -0,0 +1,211 @@
+package Execution;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/*
+ * Decides when a run saves a Checkpoint and keeps track of the I/O positions that go into it.
+ * A checkpoint is requested from outside the run, by a timer, a signal or a call to request; the
+ * IrInterpreter only looks at the request flag at loop back-edges, where it saves its state and
+ * goes on. Saving copies the tape into a memory-mapped file, which is the only part the run waits
+ * for: forcing the file to disk and moving it over the previous checkpoint happens on a background
+ * thread, so a crash in between leaves the previous checkpoint intact.
+ * A checkpoint that cannot be written is logged and leaves the previous one in place; the run goes on
+ * and finish reports the first such failure once it is done.
+ * Input and output only count as consumed once they passed through the sources returned by track.
+ */
+public final class Checkpointer {
+    // never asks for a checkpoint
+    static final Checkpointer NONE = new Checkpointer(null, null, null);
+
+    private final Path file;
+    private final PrintStream log;
+    volatile boolean requested = false;
+    private long inputPosition;
+    private long outputPosition;
+    private Program hashed;
+    private byte[] programHash;
+    private Thread writer; // forces the last checkpoint to disk
+    private volatile IOException writeError; // the first checkpoint that could not be written
+
+    // file may be null to resume without saving checkpoints, resumed and log may be null
+    // a resumed run keeps counting I/O from where resumed was taken
+    public Checkpointer(Path file, Checkpoint resumed, PrintStream log) {
+        this.file = file;
+        this.log = log;
+        this.inputPosition = resumed != null ? resumed.getInputPosition() : 0;
+        this.outputPosition = resumed != null ? resumed.getOutputPosition() : 0;
+    }
+
+    // asks the run to save a checkpoint at its next loop back-edge; safe to call from any thread
+    public void request() {
+        if (file != null) {
+            requested = true;
+        }
+    }
+
+    // requests a checkpoint every interval milliseconds from a daemon thread
+    public void every(long interval) {
+        Thread timer = new Thread(() -> {
+            try {
+                while (true) {
+                    Thread.sleep(interval);
+                    request();
+                }
+            } catch (InterruptedException e) {
+                // stop requesting
+            }
+        }, "checkpoint-timer");
+        timer.setDaemon(true);
+        timer.start();
+    }
+
+    // requests a checkpoint whenever the process receives the named signal, e.g. "USR2"
+    // sun.misc.Signal is looked up at run time, as it is not part of the Java API and not every JVM has it
+    public void onSignal(String name) {
+        try {
+            Class<?> signal = Class.forName("sun.misc.Signal");
+            Class<?> handler = Class.forName("sun.misc.SignalHandler");
+            Object requester = Proxy.newProxyInstance(handler.getClassLoader(), new Class<?>[] {handler},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "handle":
+                                request();
+                                return null;
+                            case "equals":
+                                return proxy == args[0];
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            default:
+                                return "checkpoint on " + name;
+                        }
+                    });
+            signal.getMethod("handle", signal, handler)
+                    .invoke(null, signal.getConstructor(String.class).newInstance(name), requester);
+        } catch (InvocationTargetException e) {
+            // an unknown signal, or one that the JVM handles itself
+            throw new IllegalArgumentException("Cannot checkpoint on signal " + name + ": "
+                    + e.getCause().getMessage(), e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Cannot checkpoint on signal " + name
+                    + ": this JVM does not support signal handlers", e);
+        }
+    }
+
+    public InputSource track(InputSource in) {
+        if (file == null) {
+            return in;
+        }
+        return new InputSource() {
+            @Override
+            public int read(int current) throws IOException {
+                int value = in.read(current);
+                inputPosition++;
+                return value;
+            }
+
+            @Override
+            public void close() throws IOException {
+                in.close();
+            }
+        };
+    }
+
+    public OutputSink track(OutputSink out) {
+        if (file == null) {
+            return out;
+        }
+        return new OutputSink() {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                outputPosition++;
+            }
+
+            @Override
+            public void beforeInput() throws IOException {
+                out.beforeInput();
+            }
+
+            @Override
+            public void flush() throws IOException {
+                out.flush();
+            }
+        };
+    }
+
+    // called by the engine with its state at a loop back-edge, PC pointing at the ] to run next
+    // only fails on the output; a checkpoint that cannot be written does not stop the run
+    void save(Program program, Tape tape, int pointer, int PC, OutputSink out) throws IOException {
+        requested = false;
+        long start = System.nanoTime();
+        // everything counted as written must be in the output before the checkpoint says so
+        out.flush();
+
+        try {
+            awaitWriter();
+            if (program != hashed) {
+                programHash = Checkpoint.hash(program);
+                hashed = program;
+            }
+            Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            MappedByteBuffer mapped = Checkpoint.write(temporary, programHash, tape, pointer, PC,
+                    inputPosition, outputPosition);
+            if (log != null) {
+                log.println("[checkpoint] saved at instruction " + PC + " in "
+                        + (System.nanoTime() - start) / 1000 + " us");
+            }
+
+            writer = new Thread(() -> {
+                try {
+                    mapped.force();
+                    Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException e) {
+                    failed(e);
+                }
+            }, "checkpoint-writer");
+            writer.start();
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    // waits until the last checkpoint is on disk, and reports the first checkpoint that could not be written
+    public void finish() throws IOException {
+        awaitWriter();
+        if (writeError != null) {
+            IOException error = writeError;
+            writeError = null;
+            throw new IOException("Could not write checkpoint " + file + ": " + error.getMessage(), error);
+        }
+    }
+
+    private void awaitWriter() throws IOException {
+        if (writer != null) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while writing checkpoint " + file);
+            }
+            writer = null;
+        }
+    }
+
+    // called on the run's thread or the writer's
+    private synchronized void failed(IOException e) {
+        if (log != null) {
+            log.println("[checkpoint] could not write " + file + ", keeping the previous one: " + e.getMessage());
+        }
+        if (writeError == null) {
+            writeError = e;
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package Execution;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/*
+ * Minimal writer for the class files generated by BytecodeCompiler.
+ * It only supports what the compiler needs: a final class with static methods, a constant pool of
+ * classes, method references and integers, forward and backward branches, and a StackMapTable in
+ * which every branch target has the same locals and an empty operand stack.
+ */
+final class ClassFileWriter {
+    // opcodes used by the compiler
+    static final int ACONST_NULL = 0x01;
+    static final int ICONST_0 = 0x03;
+    static final int BIPUSH = 0x10;
+    static final int SIPUSH = 0x11;
+    static final int LDC_W = 0x13;
+    static final int ILOAD = 0x15;
+    static final int ALOAD = 0x19;
+    static final int IALOAD = 0x2e;
+    static final int BALOAD = 0x33;
+    static final int SALOAD = 0x35;
+    static final int ISTORE = 0x36;
+    static final int IASTORE = 0x4f;
+    static final int BASTORE = 0x54;
+    static final int SASTORE = 0x56;
+    static final int POP = 0x57;
+    static final int DUP2 = 0x5c;
+    static final int IADD = 0x60;
+    static final int IMUL = 0x68;
+    static final int I2B = 0x91;
+    static final int I2S = 0x93;
+    static final int IFEQ = 0x99;
+    static final int IFNE = 0x9a;
+    static final int IFLT = 0x9b;
+    static final int IF_ICMPGE = 0xa2;
+    static final int GOTO = 0xa7;
+    static final int IRETURN = 0xac;
+    static final int RETURN = 0xb1;
+    static final int INVOKEVIRTUAL = 0xb6;
+    static final int INVOKESTATIC = 0xb8;
+    static final int INVOKEINTERFACE = 0xb9;
+    static final int ARRAYLENGTH = 0xbe;
+
+    // verification types for the StackMapTable
+    static final int ITEM_INTEGER = 1;
+    static final int ITEM_OBJECT = 7;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final int JAVA_8 = 52;
+
+    private final ByteArrayOutputStream constants = new ByteArrayOutputStream();
+    private final DataOutputStream constantPool = new DataOutputStream(constants);
+    private final Map<String, Integer> constantIndex = new HashMap<>();
+    private int constantCount = 1;
+
+    private final int thisClass;
+    private final int superClass;
+    private final List<MethodWriter> methods = new ArrayList<>();
+
+    ClassFileWriter(String className) {
+        thisClass = classRef(className);
+        superClass = classRef("java/lang/Object");
+    }
+
+    int thisClass() {
+        return thisClass;
+    }
+
+    int classRef(String internalName) {
+        return constant("C" + internalName, out -> {
+            int name = utf8(internalName);
+            out.writeByte(CONSTANT_CLASS);
+            out.writeShort(name);
+        });
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        return memberRef(CONSTANT_METHODREF, owner, name, descriptor);
+    }
+
+    int interfaceMethodRef(String owner, String name, String descriptor) {
+        return memberRef(CONSTANT_INTERFACE_METHODREF, owner, name, descriptor);
+    }
+
+    int integer(int value) {
+        return constant("I" + value, out -> {
+            out.writeByte(CONSTANT_INTEGER);
+            out.writeInt(value);
+        });
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        return constant("M" + tag + owner + "." + name + descriptor, out -> {
+            int ownerIndex = classRef(owner);
+            int nameAndType = constant("N" + name + descriptor, nt -> {
+                int nameIndex = utf8(name);
+                int descriptorIndex = utf8(descriptor);
+                nt.writeByte(CONSTANT_NAME_AND_TYPE);
+                nt.writeShort(nameIndex);
+                nt.writeShort(descriptorIndex);
+            });
+            out.writeByte(tag);
+            out.writeShort(ownerIndex);
+            out.writeShort(nameAndType);
+        });
+    }
+
+    int utf8(String value) {
+        return constant("U" + value, out -> {
+            out.writeByte(CONSTANT_UTF8);
+            out.writeUTF(value);
+        });
+    }
+
+    private interface ConstantEntry {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    // entries that refer to other entries create those first, so they are written to a scratch
+    // buffer and only appended once their own dependencies are in the pool
+    private int constant(String key, ConstantEntry entry) {
+        Integer existing = constantIndex.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            entry.write(new DataOutputStream(bytes));
+            bytes.writeTo(constantPool);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        int index = constantCount++;
+        constantIndex.put(key, index);
+        return index;
+    }
+
+    // frameLocals describes the locals at every branch target as pairs of (verification type, class index)
+    MethodWriter method(String name, String descriptor, int maxStack, int maxLocals, int[] frameLocals) {
+        MethodWriter method = new MethodWriter(utf8(name), utf8(descriptor), maxStack, maxLocals, frameLocals);
+        methods.add(method);
+        return method;
+    }
+
+    byte[] toByteArray() {
+        int code = utf8("Code");
+        int stackMapTable = utf8("StackMapTable");
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(JAVA_8);
+            out.writeShort(constantCount);
+            constants.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0); // interfaces
+            out.writeShort(0); // fields
+            out.writeShort(methods.size());
+            for (MethodWriter method : methods) {
+                method.write(out, code, stackMapTable);
+            }
+            out.writeShort(0); // attributes
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    static final class Label {
+        private int position = -1;
+        private int[] branches = new int[4]; // positions of branch instructions waiting for this label
+        private int branchCount = 0;
+    }
+
+    final class MethodWriter {
+        private final int name;
+        private final int descriptor;
+        private final int maxStack;
+        private final int maxLocals;
+        private final int[] frameLocals;
+        private final TreeSet<Integer> frames = new TreeSet<>();
+        private byte[] code = new byte[256];
+        private int length = 0;
+
+        private MethodWriter(int name, int descriptor, int maxStack, int maxLocals, int[] frameLocals) {
+            this.name = name;
+            this.descriptor = descriptor;
+            this.maxStack = maxStack;
+            this.maxLocals = maxLocals;
+            this.frameLocals = frameLocals;
+        }
+
+        int length() {
+            return length;
+        }
+
+        void op(int opcode) {
+            put(opcode);
+        }
+
+        void op(int opcode, int index) {
+            if (opcode == BIPUSH || ((opcode == ILOAD || opcode == ALOAD || opcode == ISTORE) && index < 256)) {
+                put(opcode);
+                put(index);
+            } else {
+                put(opcode);
+                putShort(index);
+            }
+        }
+
+        void invoke(int opcode, int methodRef, int argumentSlots) {
+            put(opcode);
+            putShort(methodRef);
+            if (opcode == INVOKEINTERFACE) {
+                put(argumentSlots + 1);
+                put(0);
+            }
+        }
+
+        void pushInt(int value) {
+            if (value >= -1 && value <= 5) {
+                put(ICONST_0 + value);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                put(BIPUSH);
+                put(value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                put(SIPUSH);
+                putShort(value);
+            } else {
+                put(LDC_W);
+                putShort(integer(value));
+            }
+        }
+
+        Label newLabel() {
+            return new Label();
+        }
+
+        // binds the label to the current position; every label is a branch target and gets a frame
+        void mark(Label label) {
+            label.position = length;
+            frames.add(length);
+            for (int i = 0; i < label.branchCount; i++) {
+                patch(label.branches[i], length);
+            }
+        }
+
+        void jump(int opcode, Label label) {
+            int at = length;
+            put(opcode);
+            putShort(0);
+            if (label.position >= 0) {
+                patch(at, label.position);
+            } else {
+                if (label.branchCount == label.branches.length) {
+                    label.branches = Arrays.copyOf(label.branches, label.branchCount * 2);
+                }
+                label.branches[label.branchCount++] = at;
+            }
+        }
+
+        private void patch(int branch, int target) {
+            int offset = target - branch;
+            if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                throw new IllegalStateException("Branch offset out of range: " + offset);
+            }
+            code[branch + 1] = (byte) (offset >> 8);
+            code[branch + 2] = (byte) offset;
+        }
+
+        private void put(int b) {
+            if (length == code.length) {
+                code = Arrays.copyOf(code, length * 2);
+            }
+            code[length++] = (byte) b;
+        }
+
+        private void putShort(int s) {
+            put(s >> 8);
+            put(s);
+        }
+
+        private void write(DataOutputStream out, int codeAttribute, int stackMapAttribute) throws IOException {
+            ByteArrayOutputStream table = new ByteArrayOutputStream();
+            DataOutputStream frameOut = new DataOutputStream(table);
+            int previous = -1;
+            for (int offset : frames) {
+                frameOut.writeByte(255); // full_frame
+                frameOut.writeShort(offset - previous - 1);
+                frameOut.writeShort(frameLocals.length / 2);
+                for (int i = 0; i < frameLocals.length; i += 2) {
+                    frameOut.writeByte(frameLocals[i]);
+                    if (frameLocals[i] == ITEM_OBJECT) {
+                        frameOut.writeShort(frameLocals[i + 1]);
+                    }
+                }
+                frameOut.writeShort(0); // empty operand stack
+                previous = offset;
+            }
+
+            int stackMapLength = frames.isEmpty() ? 0 : 2 + table.size();
+            out.writeShort(ACC_PUBLIC | ACC_STATIC);
+            out.writeShort(name);
+            out.writeShort(descriptor);
+            out.writeShort(1); // attributes: Code
+            out.writeShort(codeAttribute);
+            out.writeInt(2 + 2 + 4 + length + 2 + 2 + (stackMapLength > 0 ? 6 + stackMapLength : 0));
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(length);
+            out.write(code, 0, length);
+            out.writeShort(0); // exception table
+            if (stackMapLength > 0) {
+                out.writeShort(1);
+                out.writeShort(stackMapAttribute);
+                out.writeInt(stackMapLength);
+                out.writeShort(frames.size());
+                table.writeTo(out);
+            } else {
+                out.writeShort(0);
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package Execution;
+
+/*
+ * Compiles the whole Program with BytecodeCompiler before running it.
+ * Compilation costs a few milliseconds up front, after which every loop runs as JIT-compiled code;
+ * the code carries the checks of a Budget only when the run is limited.
+ * Semantics match IrInterpreter.
+ */
+public class CompiledEngine implements Engine {
+
+    @Override
+    public String name() {
+        return "compiled";
+    }
+
+    @Override
+    public void execute(Program program, Tape tape, InputSource in, OutputSink out, Budget budget) {
+        BytecodeCompiler.compile(program, tape, budget.limited).execute(tape, in, out, budget);
+    }
+}
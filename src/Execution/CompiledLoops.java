@@ -0,0 +1,40 @@
+package Execution;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/*
+ * The hot loops of one Program that TieredInterpreter has compiled, kept between its runs, so that a
+ * program run again starts its loops in compiled code instead of counting them up to the threshold.
+ * A loop is compiled for the tape and metering of the run that found it hot; runs on another kind of
+ * tape or with other metering ignore it, and replace it once they compile their own.
+ * Runs on several threads can share one CompiledLoops. Two runs that find a loop hot at the same time
+ * both compile it, and the last one is kept.
+ */
+public final class CompiledLoops {
+    // indexed by the position of the loop's [
+    private final AtomicReferenceArray<CompiledProgram> loops;
+
+    public CompiledLoops(Program program) {
+        this.loops = new AtomicReferenceArray<>(program.length);
+    }
+
+    // the loops that a run on tape with the given metering can use, indexed by the position of their [
+    CompiledProgram[] usable(Program program, Tape tape, boolean metered) {
+        if (program.length != loops.length()) {
+            throw new IllegalArgumentException("Compiled loops of a program of " + loops.length()
+                    + " instructions, not " + program.length);
+        }
+        CompiledProgram[] usable = new CompiledProgram[program.length];
+        for (int i = 0; i < usable.length; i++) {
+            CompiledProgram loop = loops.get(i);
+            if (loop != null && loop.fits(tape, metered)) {
+                usable[i] = loop;
+            }
+        }
+        return usable;
+    }
+
+    void put(int start, CompiledProgram loop) {
+        loops.set(start, loop);
+    }
+}
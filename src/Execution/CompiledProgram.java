@@ -0,0 +1,99 @@
+package Execution;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+
+/*
+ * A program compiled to JVM bytecode by BytecodeCompiler for one TapeMode and CellWidth.
+ * Semantics match IrInterpreter on a tape of that mode and width.
+ * execute writes the precomputed output of a whole compiled program first; run only runs the code.
+ */
+public final class CompiledProgram {
+    private final MethodHandle run;
+    private final TapeMode mode;
+    private final CellWidth width;
+    private final boolean metered;
+    private final boolean array; // takes the cells of an ArrayTape instead of the Tape
+    // the precomputed output of a whole program, not the Program, which would keep it alive as long as its code
+    private final byte[] output;
+
+    CompiledProgram(MethodHandle run, TapeMode mode, CellWidth width, boolean metered, boolean array,
+                    byte[] output) {
+        this.run = run;
+        this.mode = mode;
+        this.width = width;
+        this.metered = metered;
+        this.array = array;
+        this.output = output;
+    }
+
+    public TapeMode mode() {
+        return mode;
+    }
+
+    public CellWidth width() {
+        return width;
+    }
+
+    // whether the code charges a Budget for its loop iterations
+    public boolean isMetered() {
+        return metered;
+    }
+
+    public void execute(Tape tape, InputSource in, OutputSink out) {
+        execute(tape, in, out, Budget.unlimited());
+    }
+
+    public void execute(Tape tape, InputSource in, OutputSink out, Budget budget) {
+        try {
+            if (output != null) {
+                for (byte b : output) {
+                    out.write(b);
+                }
+            }
+            run(tape, 0, in, out, budget);
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e.getMessage(), e);
+        }
+    }
+
+    // whether run accepts tape, and charges a Budget exactly when metered is set
+    boolean fits(Tape tape, boolean metered) {
+        return tape.mode() == mode && tape.width() == width && this.metered == metered
+                && array == tape instanceof ArrayTape;
+    }
+
+    // runs the compiled code on the given tape and returns the final data pointer
+    public int run(Tape tape, int pointer, InputSource in, OutputSink out, Budget budget) throws IOException {
+        if (tape.mode() != mode || tape.width() != width) {
+            throw new IllegalArgumentException("Program was compiled for a " + mode + " tape of " + width
+                    + " cells, not " + tape.mode() + " of " + tape.width());
+        }
+        if (budget.limited && !metered) {
+            throw new IllegalArgumentException("Program was compiled without limit checks");
+        }
+        if (array && !(tape instanceof ArrayTape)) {
+            throw new IllegalArgumentException("Program was compiled for the array of an ArrayTape, not "
+                    + tape.getClass().getSimpleName());
+        }
+        try {
+            if (!array) {
+                return (int) run.invokeExact(tape, pointer, in, out, budget);
+            } else if (tape instanceof ArrayTape.Bytes) {
+                return (int) run.invokeExact(((ArrayTape.Bytes) tape).cells, pointer, in, out, budget);
+            } else if (tape instanceof ArrayTape.Shorts) {
+                return (int) run.invokeExact(((ArrayTape.Shorts) tape).cells, pointer, in, out, budget);
+            }
+            return (int) run.invokeExact(((ArrayTape.Ints) tape).cells, pointer, in, out, budget);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            // only BOUNDED tapes let the JVM check their indexes
+            throw new RuntimeException("Data pointer out of bounds: " + e.getMessage(), e);
+        } catch (IOException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new RuntimeException(t);
+        }
+    }
+}
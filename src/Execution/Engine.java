@@ -0,0 +1,38 @@
+package Execution;
+
+// one way of running a Program; EngineSelector picks one per program unless it is forced by name
+// every engine writes the precomputed output of the program first and flushes out when it is done
+public interface Engine {
+
+    // the name used on the command line and in reports of which engine ran
+    String name();
+
+    // whether the engine runs the program as optimized by Optimizer; the reference engine runs it one
+    // command per instruction, as loaded by ProgramLoader.loadCommands
+    default boolean isOptimizing() {
+        return true;
+    }
+
+    // charges budget for every loop iteration, see Budget
+    // a failure to read input or write output is thrown as an UncheckedIOException
+    void execute(Program program, Tape tape, InputSource in, OutputSink out, Budget budget);
+
+    // the engine called name: "reference", "ir", "compiled", "tiered" or "memoized"
+    static Engine forName(String name, int tierThreshold, TieringListener listener) {
+        switch (name) {
+            case "reference":
+                return new ReferenceInterpreter();
+            case "ir":
+                return new IrInterpreter();
+            case "compiled":
+                return new CompiledEngine();
+            case "tiered":
+                return new TieredInterpreter(tierThreshold, listener);
+            case "memoized":
+                return new MemoizingInterpreter(new LoopMemo(LoopMemo.DEFAULT_CAPACITY));
+            default:
+                throw new IllegalArgumentException("Unknown engine: " + name
+                        + " (expected reference, ir, compiled, tiered, memoized or auto)");
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package Execution;
+
+/*
+ * Picks the Engine for a Program from its shape, trading startup cost against peak throughput.
+ * IrInterpreter starts at once but runs every iteration through its dispatch loop; CompiledEngine
+ * pays a few milliseconds of bytecode generation and JIT warm-up before its first instruction and is
+ * several times faster afterwards; TieredInterpreter sits in between and only compiles the loops that
+ * turn out to be hot. How long a program will run is not known in advance, so the selector guesses
+ * it from the program: straight-line code and runs under a small instruction limit end quickly and
+ * stay interpreted, deeply nested loops usually mean a long run and are compiled up front, large
+ * programs are tiered because compiling all of them would cost more than most of them ever run.
+ */
+public final class EngineSelector {
+    // loops nested this deep are expected to run long enough to repay compiling the whole program
+    static final int DEEP_NESTING = 3;
+    // more instructions than this are compiled loop by loop, and not at once
+    static final int MAX_COMPILED_SIZE = 1000;
+    // runs limited to fewer instructions than this end before compiled code would warm up
+    static final long SHORT_RUN = 1_000_000;
+
+    private final int tierThreshold;
+    private final TieringListener listener;
+
+    // tierThreshold and listener configure the TieredInterpreter when that is picked
+    public EngineSelector(int tierThreshold, TieringListener listener) {
+        this.tierThreshold = tierThreshold;
+        this.listener = listener;
+    }
+
+    public Choice select(Program program, ExecutionLimits limits) {
+        int loops = 0;
+        int depth = 0;
+        int maxDepth = 0;
+        for (int i = 0; i < program.length; i++) {
+            if (program.opcodes[i] == OpCode.JUMP_IF_ZERO) {
+                loops++;
+                maxDepth = Math.max(maxDepth, ++depth);
+            } else if (program.opcodes[i] == OpCode.JUMP_IF_NOT_ZERO) {
+                depth--;
+            }
+        }
+        String shape = program.length + " instructions, " + loops + " loops nested " + maxDepth + " deep";
+
+        if (loops == 0) {
+            return new Choice(new IrInterpreter(), shape + ": no loops, so it runs once");
+        }
+        long maxInstructions = limits.getMaxInstructions();
+        if (maxInstructions > 0 && maxInstructions < SHORT_RUN) {
+            return new Choice(new IrInterpreter(), shape + ": limited to " + maxInstructions
+                    + " instructions, too few to repay compiling");
+        }
+        if (program.length > MAX_COMPILED_SIZE) {
+            return new Choice(new TieredInterpreter(tierThreshold, listener),
+                    shape + ": too large to compile up front, compiling hot loops only");
+        }
+        if (maxDepth >= DEEP_NESTING) {
+            return new Choice(new CompiledEngine(), shape + ": expected to run long");
+        }
+        return new Choice(new TieredInterpreter(tierThreshold, listener),
+                shape + ": compiling loops once they turn out to be hot");
+    }
+
+    // the selected engine and why it was picked
+    public static final class Choice {
+        private final Engine engine;
+        private final String reason;
+
+        Choice(Engine engine, String reason) {
+            this.engine = engine;
+            this.reason = reason;
+        }
+
+        public Engine getEngine() {
+            return engine;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return engine.name() + " (" + reason + ")";
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package Execution;
+
+// what the , instruction stores when there is no more input
+public enum EofPolicy {
+    ZERO,      // store 0, as the original interpreter always did
+    MINUS_ONE, // store -1, i.e. 255 in a byte cell
+    UNCHANGED; // leave the cell as it was
+
+    int apply(int current) {
+        switch (this) {
+            case ZERO:
+                return 0;
+            case MINUS_ONE:
+                return -1;
+            default:
+                return current;
+        }
+    }
+}
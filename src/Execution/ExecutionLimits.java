@@ -0,0 +1,52 @@
+package Execution;
+
+/*
+ * Upper bounds for one run of an untrusted program: executed instructions, wall-clock time and
+ * output bytes. A limit of 0 means unlimited. Every run gets a Budget from start(), which the engines
+ * charge at loop back-edges; see Budget for how instructions are counted.
+ */
+public final class ExecutionLimits {
+    public static final ExecutionLimits NONE = new ExecutionLimits(0, 0, 0);
+
+    private final long maxInstructions;
+    private final long maxMillis;
+    private final long maxOutputBytes;
+
+    public ExecutionLimits(long maxInstructions, long maxMillis, long maxOutputBytes) {
+        if (maxInstructions < 0 || maxMillis < 0 || maxOutputBytes < 0) {
+            throw new IllegalArgumentException("Limits must not be negative");
+        }
+        this.maxInstructions = maxInstructions;
+        this.maxMillis = maxMillis;
+        this.maxOutputBytes = maxOutputBytes;
+    }
+
+    public long getMaxInstructions() {
+        return maxInstructions;
+    }
+
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+
+    public long getMaxOutputBytes() {
+        return maxOutputBytes;
+    }
+
+    // whether engines have to check anything at all; compiled code only carries the checks if so
+    public boolean isLimited() {
+        return maxInstructions > 0 || maxMillis > 0 || maxOutputBytes > 0;
+    }
+
+    // starts the clock for one run
+    public Budget start() {
+        return new Budget(this);
+    }
+
+    @Override
+    public String toString() {
+        return "limits: " + (maxInstructions > 0 ? maxInstructions : "unlimited") + " instructions, "
+                + (maxMillis > 0 ? maxMillis + " ms" : "unlimited time") + ", "
+                + (maxOutputBytes > 0 ? maxOutputBytes + " output bytes" : "unlimited output");
+    }
+}
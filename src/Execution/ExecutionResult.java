@@ -0,0 +1,58 @@
+package Execution;
+
+// how a run under ExecutionLimits ended, with what it used up to that point
+public final class ExecutionResult {
+    public enum Status {
+        COMPLETED,
+        INSTRUCTION_LIMIT,
+        TIME_LIMIT,
+        OUTPUT_LIMIT,
+        FAILED
+    }
+
+    private final Status status;
+    private final long instructions;
+    private final long outputBytes;
+    private final long nanos;
+    private final String message;
+
+    ExecutionResult(Status status, long instructions, long outputBytes, long nanos, String message) {
+        this.status = status;
+        this.instructions = instructions;
+        this.outputBytes = outputBytes;
+        this.nanos = nanos;
+        this.message = message;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isCompleted() {
+        return status == Status.COMPLETED;
+    }
+
+    // instructions charged at loop back-edges, see Budget
+    public long getInstructions() {
+        return instructions;
+    }
+
+    public long getOutputBytes() {
+        return outputBytes;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    // why the run stopped, null when it completed
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return status + (message != null ? " (" + message + ")" : "") + " after " + instructions
+                + " instructions, " + outputBytes + " output bytes, " + nanos / 1_000_000 + " ms";
+    }
+}
@@ -0,0 +1,334 @@
+package Execution;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * A long-lived server that runs programs for local clients, so that scripts do not pay for starting
+ * a JVM, parsing, optimizing and warming up the JIT on every run.
+ * It listens on a Unix domain socket or on a TCP port of the loopback address and serves one run per
+ * connection, each on a virtual thread. A client sends one line
+ *     RUN <program file> [engine=NAME] [max-instructions=N] [max-time=MS] [max-output=BYTES]
+ * followed by the input of the program, and shuts down its side of the connection to end the input.
+ * The output is sent back in blocks as the output buffer fills up, and before the program reads
+ * input so that a prompt reaches the client, followed by a NUL byte and the ExecutionResult of the
+ * run, so everything before the last NUL is output. A line STATS is answered with a NUL byte and the
+ * counters of the server.
+ * Programs come from the ProgramCache. The code compiled for a program, by the compiled engine or
+ * for the hot loops of the tiered engine, is kept for as long as the ProgramCache keeps the program,
+ * so a repeated run starts right away in code the JIT has already optimized. The memoized engine
+ * starts with an empty LoopMemo on every run, as a LoopMemo cannot be shared between threads.
+ * At most maxRuns programs run at a time and at most maxQueued more wait for their turn; a
+ * connection beyond that is answered with BUSY at once instead of piling up. Output is written to the
+ * connection as it comes, so a client that reads slowly holds up only its own run.
+ * Limits given by a request apply on top of the limits of the server and can only tighten them.
+ * A client that sends no request line within REQUEST_TIMEOUT is disconnected, and a run whose input
+ * stays idle for INPUT_TIMEOUT fails, so neither holds a connection or a run forever. Waiting for
+ * input counts against the time limit of the run like running does.
+ */
+public final class ExecutionServer {
+    private static final int MAX_REQUEST_LINE = 4096;
+    private static final long REQUEST_TIMEOUT = 10_000; // ms
+    private static final long INPUT_TIMEOUT = 60_000; // ms
+
+    private final ProgramCache cache;
+    private final TapeMode tapeMode;
+    private final int tapeSize;
+    private final CellWidth cellWidth;
+    private final EofPolicy eofPolicy;
+    private final ExecutionLimits limits;
+    private final PartialEvaluator evaluator;
+    private final String engine;
+    private final int maxRuns;
+    private final Semaphore runs;
+    private final Semaphore admitted;
+    private final EngineSelector selector =
+            new EngineSelector(TieredInterpreter.DEFAULT_THRESHOLD, TieringListener.NONE);
+    // weakly keyed, so the code goes when the ProgramCache drops the program; only used while holding it
+    private final WeakHashMap<Program, Warm> warm = new WeakHashMap<>();
+    private final PrintStream log;
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong stopped = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    // engine is the name of an Engine or "auto"; evaluator may be null, and is only used for unlimited runs
+    // log may be null, otherwise every request is logged to it
+    public ExecutionServer(ProgramCache cache, TapeMode tapeMode, int tapeSize, CellWidth cellWidth,
+                           EofPolicy eofPolicy, ExecutionLimits limits, PartialEvaluator evaluator, String engine,
+                           int maxRuns, int maxQueued, PrintStream log) {
+        if (maxRuns < 1 || maxQueued < 0) {
+            throw new IllegalArgumentException("A server needs at least one run and no negative queue");
+        }
+        if (!engine.equals("auto")) {
+            Engine.forName(engine, TieredInterpreter.DEFAULT_THRESHOLD, TieringListener.NONE);
+        }
+        this.cache = cache;
+        this.tapeMode = tapeMode;
+        this.tapeSize = tapeSize;
+        this.cellWidth = cellWidth;
+        this.eofPolicy = eofPolicy;
+        this.limits = limits;
+        this.evaluator = evaluator;
+        this.engine = engine;
+        this.maxRuns = maxRuns;
+        this.runs = new Semaphore(maxRuns, true);
+        this.admitted = new Semaphore(maxRuns + maxQueued);
+        this.log = log;
+    }
+
+    // "unix:PATH" for a Unix domain socket, or a port number for TCP on the loopback address
+    public static SocketAddress address(String address) {
+        if (address.startsWith("unix:")) {
+            return UnixDomainSocketAddress.of(address.substring("unix:".length()));
+        }
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address));
+    }
+
+    // accepts connections until the thread is interrupted or the channel fails
+    public void serve(SocketAddress address) throws IOException {
+        Path socketFile = null;
+        ServerSocketChannel server;
+        if (address instanceof UnixDomainSocketAddress) {
+            // a socket file left over from an earlier server would make bind fail
+            socketFile = ((UnixDomainSocketAddress) address).getPath();
+            Files.deleteIfExists(socketFile);
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            server = ServerSocketChannel.open();
+        }
+
+        try {
+            server.bind(address);
+            if (log != null) {
+                log.println("[server] listening on " + server.getLocalAddress() + ", " + maxRuns + " runs at a time");
+            }
+            while (!Thread.currentThread().isInterrupted()) {
+                SocketChannel connection = server.accept();
+                Thread.ofVirtual().start(() -> handle(connection));
+            }
+        } finally {
+            server.close();
+            if (socketFile != null) {
+                Files.deleteIfExists(socketFile);
+            }
+        }
+    }
+
+    private void handle(SocketChannel connection) {
+        try (SocketChannel channel = connection) {
+            // a read that times out shuts down the input, which ends it at once
+            TimedInputStream timed = new TimedInputStream(Channels.newInputStream(channel), REQUEST_TIMEOUT,
+                    Budget.unlimited(), () -> shutdownInput(channel));
+            InputStream input = new BufferedInputStream(timed);
+            BufferedOutputSink sink = new BufferedOutputSink(Channels.newOutputStream(channel), FlushPolicy.INPUT);
+            String request = readLine(input);
+            String[] parts = request == null ? new String[0] : request.trim().split("\\s+");
+
+            if (parts.length == 1 && parts[0].equals("STATS")) {
+                finish(sink, toString());
+            } else if (parts.length < 2 || !parts[0].equals("RUN")) {
+                finish(sink, "ERROR expected RUN <program file> [option=value ...] or STATS");
+            } else if (!admitted.tryAcquire()) {
+                rejected.incrementAndGet();
+                finish(sink, "BUSY " + maxRuns + " runs and the queue behind them are full");
+            } else {
+                try {
+                    runs.acquire();
+                    try {
+                        run(parts, timed, input, sink);
+                    } finally {
+                        runs.release();
+                    }
+                } finally {
+                    admitted.release();
+                }
+            }
+        } catch (IOException e) {
+            // the client went away; there is nobody left to tell
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run(String[] request, TimedInputStream timed, InputStream input, BufferedOutputSink sink)
+            throws IOException {
+        String engineName = engine;
+        long maxInstructions = 0;
+        long maxMillis = 0;
+        long maxOutput = 0;
+        ExecutionLimits runLimits;
+        try {
+            for (int i = 2; i < request.length; i++) {
+                String option = request[i];
+                if (option.startsWith("engine=")) {
+                    engineName = option.substring("engine=".length());
+                } else if (option.startsWith("max-instructions=")) {
+                    maxInstructions = Long.parseLong(option.substring("max-instructions=".length()));
+                } else if (option.startsWith("max-time=")) {
+                    maxMillis = Long.parseLong(option.substring("max-time=".length()));
+                } else if (option.startsWith("max-output=")) {
+                    maxOutput = Long.parseLong(option.substring("max-output=".length()));
+                } else {
+                    throw new IllegalArgumentException("Unknown option: " + option);
+                }
+            }
+            if (maxInstructions < 0 || maxMillis < 0 || maxOutput < 0) {
+                throw new IllegalArgumentException("Limits must not be negative");
+            }
+            runLimits = new ExecutionLimits(tighter(limits.getMaxInstructions(), maxInstructions),
+                    tighter(limits.getMaxMillis(), maxMillis), tighter(limits.getMaxOutputBytes(), maxOutput));
+        } catch (IllegalArgumentException e) {
+            finish(sink, "ERROR " + e.getMessage());
+            return;
+        }
+
+        Path file = Paths.get(request[1]);
+        Engine selected;
+        Program program;
+        try {
+            selected = engineName.equals("auto")
+                    ? null
+                    : Engine.forName(engineName, TieredInterpreter.DEFAULT_THRESHOLD, TieringListener.NONE);
+            if (selected != null && !selected.isOptimizing()) {
+                program = ProgramLoader.loadCommands(file);
+            } else if (evaluator != null && !runLimits.isLimited()) {
+                program = cache.load(file, evaluator);
+            } else {
+                program = cache.load(file);
+            }
+            if (selected == null) {
+                selected = selector.select(program, runLimits).getEngine();
+            }
+        } catch (IOException e) {
+            finish(sink, "ERROR cannot read program file " + file + ": " + e);
+            return;
+        } catch (RuntimeException e) {
+            finish(sink, "ERROR " + e.getMessage());
+            return;
+        }
+
+        Budget budget = runLimits.start();
+        timed.time(INPUT_TIMEOUT, budget);
+        ExecutionResult result;
+        // not closed, which would close the connection before the result is sent
+        InputSource in = new BufferedInputSource(input, eofPolicy);
+        try {
+            Tape tape = tapeMode.newTape(tapeSize, cellWidth);
+            OutputSink out = budget.limit(sink);
+            if (selected instanceof CompiledEngine) {
+                compiled(program, runLimits.isLimited()).execute(tape, in, out, budget);
+            } else if (selected instanceof TieredInterpreter) {
+                ((TieredInterpreter) selected).execute(program, warm(program).loops, tape, in, out, budget);
+            } else {
+                selected.execute(program, tape, in, out, budget);
+            }
+            result = budget.result(ExecutionResult.Status.COMPLETED, null);
+            completed.incrementAndGet();
+        } catch (LimitExceededException e) {
+            result = budget.result(e.getStatus(), e.getMessage());
+            stopped.incrementAndGet();
+        } catch (RuntimeException e) {
+            result = budget.result(ExecutionResult.Status.FAILED, e.getMessage());
+            stopped.incrementAndGet();
+        }
+        if (log != null) {
+            log.println("[server] " + file + " on " + selected.name() + ": " + result);
+        }
+        finish(sink, result.toString());
+    }
+
+    // the code kept for program, created empty on its first run
+    private Warm warm(Program program) {
+        synchronized (warm) {
+            return warm.computeIfAbsent(program, Warm::new);
+        }
+    }
+
+    // the program compiled for the tape of the server, compiling it on first use
+    // compiled under the lock of its own program, so concurrent first runs compile it once while
+    // other programs go on
+    private CompiledProgram compiled(Program program, boolean metered) {
+        return warm(program).compiled.computeIfAbsent(metered,
+                m -> BytecodeCompiler.compile(program, tapeMode, cellWidth, m));
+    }
+
+    private static void shutdownInput(SocketChannel channel) {
+        try {
+            channel.shutdownInput();
+        } catch (IOException e) {
+            // already closed, so nothing waits on it anymore
+        }
+    }
+
+    // the stricter of two limits where 0 means unlimited
+    private static long tighter(long limit, long requested) {
+        if (limit == 0 || requested == 0) {
+            return Math.max(limit, requested);
+        }
+        return Math.min(limit, requested);
+    }
+
+    // the request line, or null if the connection ends first
+    private static String readLine(InputStream input) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = input.read()) != '\n') {
+            if (b < 0) {
+                return line.size() > 0 ? line.toString(StandardCharsets.UTF_8) : null;
+            }
+            if (line.size() == MAX_REQUEST_LINE) {
+                throw new IOException("Request line too long");
+            }
+            line.write(b);
+        }
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    // ends the reply with a NUL byte and a status line after whatever output was written
+    private static void finish(BufferedOutputSink sink, String status) throws IOException {
+        sink.write(0);
+        for (byte b : (status + "\n").getBytes(StandardCharsets.UTF_8)) {
+            sink.write(b);
+        }
+        sink.flush();
+    }
+
+    // the code of one program; it must not refer to the program, which would keep its weak key alive
+    private static final class Warm {
+        final CompiledLoops loops;
+        // the whole program, by whether it is metered
+        final Map<Boolean, CompiledProgram> compiled = Collections.synchronizedMap(new HashMap<>());
+
+        Warm(Program program) {
+            this.loops = new CompiledLoops(program);
+        }
+    }
+
+    @Override
+    public String toString() {
+        int running = maxRuns - runs.availablePermits();
+        return "server: " + completed.get() + " completed, " + stopped.get() + " stopped or failed, "
+                + rejected.get() + " rejected, " + running + " running; " + cache;
+    }
+}
@@ -0,0 +1,11 @@
+package Execution;
+
+// when a BufferedOutputSink hands its buffered bytes to the underlying stream
+// every policy also flushes when the program ends
+public enum FlushPolicy {
+    LINE,  // after every newline, before every input and when the buffer is full; for interactive use
+    INPUT, // before every input and when the buffer is full, so prompts are visible when input is read
+    SIZE,  // only when the buffer is full
+    EXIT   // only when the program ends; the buffer grows to hold the output, up to a maximum size after
+           // which it is written out whenever it is full as with SIZE
+}
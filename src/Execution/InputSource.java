@@ -0,0 +1,11 @@
+package Execution;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+// source of the bytes read by the , instruction
+public interface InputSource extends Closeable {
+    // returns the value to store in the cell that currently holds current: the next input byte,
+    // or whatever the source's EofPolicy says once the input is exhausted
+    int read(int current) throws IOException;
+}
@@ -0,0 +1,107 @@
+package Execution;
+
+import java.util.Arrays;
+
+// growable instruction list used while building a Program
+// jump operands are resolved in toProgram(), so passes can emit brackets without tracking targets
+// the parsers add every command through addFolded or addCommand, which count the commands so that
+// each ] gets the number of commands in its loop as its cost, see Program
+final class InstructionBuffer {
+    private int[] opcodes = new int[16];
+    private int[] operands = new int[16];
+    private int[] offsets = new int[16];
+    private int[] costs = new int[16];
+    private int length = 0;
+    private int commands = 0; // commands parsed so far
+    private int[] loopStarts = new int[16]; // command number of every open [
+    private int depth = 0;
+
+    void add(int opcode, int operand, int offset) {
+        add(opcode, operand, offset, 0);
+    }
+
+    void add(int opcode, int operand, int offset, int cost) {
+        if (length == opcodes.length) {
+            opcodes = Arrays.copyOf(opcodes, length * 2);
+            operands = Arrays.copyOf(operands, length * 2);
+            offsets = Arrays.copyOf(offsets, length * 2);
+            costs = Arrays.copyOf(costs, length * 2);
+        }
+        opcodes[length] = opcode;
+        operands[length] = operand;
+        offsets[length] = offset;
+        costs[length] = cost;
+        length++;
+    }
+
+    // adds one parsed command as an instruction of its own; brackets must already have been checked
+    void addCommand(int opcode) {
+        addCommand(opcode, 0);
+    }
+
+    void addCommand(int opcode, int operand) {
+        commands++;
+        int cost = 0;
+        if (opcode == OpCode.JUMP_IF_ZERO) {
+            if (depth == loopStarts.length) {
+                loopStarts = Arrays.copyOf(loopStarts, depth * 2);
+            }
+            loopStarts[depth++] = commands;
+        } else if (opcode == OpCode.JUMP_IF_NOT_ZERO) {
+            cost = commands - loopStarts[--depth] + 1;
+        }
+        add(opcode, operand, 0, cost);
+    }
+
+    int size() {
+        return length;
+    }
+
+    int lastOpcode() {
+        return length > 0 ? opcodes[length - 1] : -1;
+    }
+
+    int lastOffset() {
+        return offsets[length - 1];
+    }
+
+    // adds an ADD or MOVE, folding it into a directly preceding run of the same opcode
+    void addFolded(int opcode, int operand) {
+        commands++;
+        if (lastOpcode() != opcode) {
+            add(opcode, operand, 0);
+            return;
+        }
+        operands[length - 1] += operand;
+        if (operands[length - 1] == 0) {
+            length--; // the run cancelled itself out, e.g. +-
+        }
+    }
+
+    // links every JUMP_IF_ZERO with its JUMP_IF_NOT_ZERO; brackets must already be balanced
+    Program toProgram() {
+        return toProgram(new byte[0]);
+    }
+
+    // the same for a program that writes output before its first instruction
+    Program toProgram(byte[] output) {
+        int[] openBrackets = new int[16];
+        int depth = 0;
+
+        for (int i = 0; i < length; i++) {
+            if (opcodes[i] == OpCode.JUMP_IF_ZERO) {
+                if (depth == openBrackets.length) {
+                    openBrackets = Arrays.copyOf(openBrackets, depth * 2);
+                }
+                openBrackets[depth++] = i;
+            } else if (opcodes[i] == OpCode.JUMP_IF_NOT_ZERO) {
+                int open = openBrackets[--depth];
+                operands[open] = i;
+                operands[i] = open;
+            }
+        }
+
+        return new Program(Arrays.copyOf(opcodes, length), Arrays.copyOf(operands, length),
+                Arrays.copyOf(offsets, length), Arrays.copyOf(costs, length), length, output);
+    }
+}
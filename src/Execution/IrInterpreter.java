@@ -0,0 +1,100 @@
+package Execution;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/*
+ * Runs a Program, the compact instruction form of a Brainfuck program.
+ * Semantics match ReferenceInterpreter: cells of the width of the Tape, output of the raw cell byte and
+ * the InputSource's EofPolicy on end of input. What happens at the edges of the tape is up to the Tape
+ * it runs on.
+ * A run can be paused into a Checkpoint at any loop back-edge and resumed from one later.
+ */
+public class IrInterpreter implements Engine {
+
+    @Override
+    public String name() {
+        return "ir";
+    }
+
+    public void execute(Program program, Tape tape, InputSource in, OutputSink out) {
+        execute(program, tape, in, out, Budget.unlimited());
+    }
+
+    // charges budget for every loop iteration, see Budget
+    @Override
+    public void execute(Program program, Tape tape, InputSource in, OutputSink out, Budget budget) {
+        execute(program, tape, 0, 0, in, out, budget, Checkpointer.NONE);
+    }
+
+    // starts at the given data pointer and instruction, such as those of a Checkpoint, and saves a
+    // checkpoint at the next loop back-edge whenever checkpointer asks for one
+    // the precomputed output of the program is written only when starting at instruction 0
+    public void execute(Program program, Tape tape, int pointer, int PC, InputSource in, OutputSink out,
+                        Budget budget, Checkpointer checkpointer) {
+        int[] opcodes = program.opcodes;
+        int[] operands = program.operands;
+        int[] offsets = program.offsets;
+        int[] costs = program.costs;
+        int bits = tape.width().bits();
+        int length = program.length;
+
+        try {
+            if (PC == 0) {
+                program.writeOutput(out);
+            }
+            while (PC < length) {
+                switch (opcodes[PC]) {
+                    case OpCode.ADD:
+                        tape.add(pointer + offsets[PC], operands[PC]);
+                        break;
+                    case OpCode.MOVE:
+                        pointer = tape.move(pointer, operands[PC]);
+                        break;
+                    case OpCode.OUTPUT:
+                        out.write(tape.get(pointer + offsets[PC]));
+                        break;
+                    case OpCode.INPUT:
+                        out.beforeInput();
+                        int target = pointer + offsets[PC];
+                        tape.set(target, in.read(tape.get(target)));
+                        break;
+                    case OpCode.CLEAR:
+                        budget.tickClear(tape.get(pointer + offsets[PC]), operands[PC], costs[PC], bits);
+                        tape.set(pointer + offsets[PC], 0);
+                        break;
+                    case OpCode.MUL_ADD:
+                        // the loop the MUL_ADD came from would not have run on a zero cell, nor touched its neighbours
+                        int factor = tape.get(pointer);
+                        if (factor != 0) {
+                            tape.add(pointer + offsets[PC], factor * operands[PC]);
+                        }
+                        break;
+                    case OpCode.SCAN:
+                        pointer = ScanLoops.scan(tape, pointer, operands[PC], costs[PC], budget);
+                        break;
+                    case OpCode.JUMP_IF_ZERO:
+                        if (tape.get(pointer) == 0) {
+                            PC = operands[PC];
+                        }
+                        break;
+                    case OpCode.JUMP_IF_NOT_ZERO:
+                        if (checkpointer.requested) {
+                            // resuming starts at this ], which then runs its test as usual
+                            checkpointer.save(program, tape, pointer, PC, out);
+                        }
+                        budget.tick(costs[PC]);
+                        if (tape.get(pointer) != 0) {
+                            PC = operands[PC];
+                        }
+                        break;
+                }
+
+                PC++;
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package Execution;
+
+// thrown by a Budget to stop a run that went over one of its ExecutionLimits
+public class LimitExceededException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final ExecutionResult.Status status;
+
+    LimitExceededException(ExecutionResult.Status status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    public ExecutionResult.Status getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,146 @@
+package Execution;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Remembers what the pure loops of one Program did, for MemoizingInterpreter.
+ * A pure loop does no input or output and has a range in PointerRanges, so it only reads and writes
+ * the window of cells from pointer + low to pointer + high and leaves the pointer where it found it.
+ * Its effect is then a function of the window alone: the cache maps the loop and the values of the
+ * window on entry to the values on exit, plus the instructions it took so that a Budget is charged
+ * as if it ran. The cache holds at most capacity cells of windows and drops the least recently used
+ * entries beyond that.
+ * A loop whose windows hardly ever repeat is not worth the lookups, so every loop is judged after
+ * PROBATION lookups and left alone for the rest of the run if fewer than a quarter of them hit.
+ * Loops are identified by the index of their [, so a memo run with another Program starts over.
+ */
+public final class LoopMemo {
+    public static final int DEFAULT_CAPACITY = 1 << 20; // cells kept, of windows on entry and exit together
+
+    static final int MAX_WINDOW = 64; // cells; wider loops take longer to look up than many of them run
+    private static final int PROBATION = 256;
+
+    private final int capacity;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private Program program;
+    private int[] lookups; // both indexed by the position of the loop's [
+    private int[] loopHits;
+    private long cells = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public LoopMemo(int capacity) {
+        this.capacity = capacity;
+    }
+
+    // prepares the memo for runs of program, dropping what it remembered of another one
+    void bind(Program program) {
+        if (program == this.program) {
+            return;
+        }
+        this.program = program;
+        lookups = new int[program.length];
+        loopHits = new int[program.length];
+        entries.clear();
+        cells = 0;
+    }
+
+    // whether the loop starting at index is still worth looking up
+    boolean isEnabled(int index) {
+        return lookups[index] < PROBATION || loopHits[index] * 4 >= lookups[index];
+    }
+
+    // the entry for the loop starting at index when entered with window, or null
+    Entry lookup(int index, int[] window) {
+        lookups[index]++;
+        Entry entry = entries.get(new Key(index, window));
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        loopHits[index]++;
+        return entry;
+    }
+
+    // remembers that the loop starting at index turned window into output in cost instructions
+    void store(int index, int[] window, int[] output, long cost) {
+        if (window.length * 2L > capacity) {
+            return;
+        }
+        Entry previous = entries.put(new Key(index, window), new Entry(output, cost));
+        if (previous == null) {
+            cells += window.length * 2L;
+        }
+
+        Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+        while (cells > capacity && eldest.hasNext()) {
+            Map.Entry<Key, Entry> entry = eldest.next();
+            cells -= entry.getKey().window.length * 2L;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    public long hits() {
+        return hits;
+    }
+
+    public long misses() {
+        return misses;
+    }
+
+    // the share of lookups that hit, 0 before the first one
+    public double hitRate() {
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+
+    @Override
+    public String toString() {
+        return "loop memo: " + hits + " hits, " + misses + " misses ("
+                + String.format("%.1f", hitRate() * 100) + "% hit rate), " + entries.size() + " entries ("
+                + cells + " cells), " + evictions + " evicted";
+    }
+
+    // a loop and the values of its window on entry
+    private static final class Key {
+        final int index;
+        final int[] window;
+        final int hash;
+
+        Key(int index, int[] window) {
+            this.index = index;
+            this.window = window;
+            this.hash = 31 * index + Arrays.hashCode(window);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return index == key.index && Arrays.equals(window, key.window);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    // the values of the window on exit and the instructions the loop took to get there
+    static final class Entry {
+        final int[] output;
+        final long cost;
+
+        Entry(int[] output, long cost) {
+            this.output = output;
+            this.cost = cost;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package Execution;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * An InputSource that memory-maps its input file, so that large inputs are read straight from the
+ * page cache without copying. Files are mapped in windows of at most 1 GB, since a single
+ * MappedByteBuffer cannot address more than 2 GB.
+ */
+public final class MappedInputSource implements InputSource {
+    private static final long WINDOW_SIZE = 1L << 30;
+
+    private final FileChannel channel;
+    private final EofPolicy eofPolicy;
+    private final long size;
+    private long windowStart = 0;
+    private MappedByteBuffer window;
+
+    public MappedInputSource(Path file, EofPolicy eofPolicy) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.eofPolicy = eofPolicy;
+        this.size = channel.size();
+        this.window = map(0);
+    }
+
+    @Override
+    public int read(int current) throws IOException {
+        if (!window.hasRemaining()) {
+            windowStart += window.capacity();
+            if (windowStart >= size) {
+                return eofPolicy.apply(current);
+            }
+            window = map(windowStart);
+        }
+        return window.get() & 0xFF;
+    }
+
+    private MappedByteBuffer map(long start) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, size - start));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
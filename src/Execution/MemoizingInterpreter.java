@@ -0,0 +1,173 @@
+package Execution;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/*
+ * Runs a Program like IrInterpreter, but skips pure loops whose outcome it has seen before.
+ * Programs such as cellular automata run the same inner loops on the same few cells over and over;
+ * on entering a pure loop (see LoopMemo) this engine reads the window of cells the loop can reach and
+ * looks it up in its LoopMemo. On a hit it writes the cells the loop changed and goes on after the
+ * ], on a miss it runs the loop and remembers the window it leaves behind. Loops inside a pure loop
+ * are pure as well, so they are looked up while the loop around them runs after a miss.
+ * The lookups live in this separate loop only, so IrInterpreter pays nothing for them; the engine is
+ * never picked by EngineSelector and has to be asked for by name.
+ * A MemoizingInterpreter is not thread-safe, as it shares its LoopMemo between runs.
+ */
+public class MemoizingInterpreter implements Engine {
+    private final LoopMemo memo;
+
+    public MemoizingInterpreter(LoopMemo memo) {
+        this.memo = memo;
+    }
+
+    @Override
+    public String name() {
+        return "memoized";
+    }
+
+    public LoopMemo memo() {
+        return memo;
+    }
+
+    // charges budget for every loop iteration, and for a remembered loop what it took when it ran
+    @Override
+    public void execute(Program program, Tape tape, InputSource in, OutputSink out, Budget budget) {
+        int[] opcodes = program.opcodes;
+        int[] operands = program.operands;
+        int[] offsets = program.offsets;
+        int[] costs = program.costs;
+        int bits = tape.width().bits();
+        int length = program.length;
+
+        memo.bind(program);
+        PointerRanges ranges = PointerRanges.analyze(program);
+        boolean[] pure = pureLoops(program, ranges);
+
+        // the pure loops that are running after a miss, innermost last
+        int[] running = new int[length];
+        int[][] windows = new int[length][];
+        long[] started = new long[length];
+        int depth = 0;
+
+        int pointer = 0; // Data Pointer
+        int PC = 0; // Program Counter
+
+        try {
+            program.writeOutput(out);
+            while (PC < length) {
+                switch (opcodes[PC]) {
+                    case OpCode.ADD:
+                        tape.add(pointer + offsets[PC], operands[PC]);
+                        break;
+                    case OpCode.MOVE:
+                        pointer = tape.move(pointer, operands[PC]);
+                        break;
+                    case OpCode.OUTPUT:
+                        out.write(tape.get(pointer + offsets[PC]));
+                        break;
+                    case OpCode.INPUT:
+                        out.beforeInput();
+                        int target = pointer + offsets[PC];
+                        tape.set(target, in.read(tape.get(target)));
+                        break;
+                    case OpCode.CLEAR:
+                        budget.tickClear(tape.get(pointer + offsets[PC]), operands[PC], costs[PC], bits);
+                        tape.set(pointer + offsets[PC], 0);
+                        break;
+                    case OpCode.MUL_ADD:
+                        // the loop the MUL_ADD came from would not have run on a zero cell, nor touched its neighbours
+                        int factor = tape.get(pointer);
+                        if (factor != 0) {
+                            tape.add(pointer + offsets[PC], factor * operands[PC]);
+                        }
+                        break;
+                    case OpCode.SCAN:
+                        pointer = ScanLoops.scan(tape, pointer, operands[PC], costs[PC], budget);
+                        break;
+                    case OpCode.JUMP_IF_ZERO:
+                        if (tape.get(pointer) == 0) {
+                            PC = operands[PC];
+                        } else if (pure[PC] && memo.isEnabled(PC)
+                                && onTape(tape, pointer + ranges.low(PC), pointer + ranges.high(PC))) {
+                            int first = pointer + ranges.low(PC);
+                            int[] window = read(tape, first, ranges.high(PC) - ranges.low(PC) + 1);
+                            LoopMemo.Entry entry = memo.lookup(PC, window);
+                            if (entry != null) {
+                                write(tape, first, window, entry.output);
+                                budget.tick(entry.cost);
+                                PC = operands[PC];
+                            } else {
+                                running[depth] = PC;
+                                windows[depth] = window;
+                                started[depth] = budget.instructions();
+                                depth++;
+                            }
+                        }
+                        break;
+                    case OpCode.JUMP_IF_NOT_ZERO:
+                        budget.tick(costs[PC]);
+                        if (tape.get(pointer) != 0) {
+                            PC = operands[PC];
+                        } else if (depth > 0 && running[depth - 1] == operands[PC]) {
+                            depth--;
+                            int start = running[depth];
+                            int[] output = read(tape, pointer + ranges.low(start), windows[depth].length);
+                            memo.store(start, windows[depth], output, budget.instructions() - started[depth]);
+                        }
+                        break;
+                }
+
+                PC++;
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e.getMessage(), e);
+        }
+    }
+
+    // the loops, by the position of their [, that neither read nor write and have a small enough range
+    private static boolean[] pureLoops(Program program, PointerRanges ranges) {
+        boolean[] pure = new boolean[program.length];
+        for (int i = 0; i < program.length; i++) {
+            if (program.opcodes[i] != OpCode.JUMP_IF_ZERO || !ranges.isKnown(i)
+                    || ranges.high(i) - ranges.low(i) >= LoopMemo.MAX_WINDOW) {
+                continue;
+            }
+            pure[i] = true;
+            for (int j = i + 1; j < program.operands[i]; j++) {
+                if (program.opcodes[j] == OpCode.INPUT || program.opcodes[j] == OpCode.OUTPUT) {
+                    pure[i] = false;
+                    break;
+                }
+            }
+        }
+        return pure;
+    }
+
+    // whether the cells from first to last can be read without going off a BOUNDED tape
+    private static boolean onTape(Tape tape, int first, int last) {
+        if (tape.mode() != TapeMode.BOUNDED) {
+            return true;
+        }
+        return first >= 0 && last < tape.size();
+    }
+
+    private static int[] read(Tape tape, int first, int count) {
+        int[] cells = new int[count];
+        for (int i = 0; i < count; i++) {
+            cells[i] = tape.get(first + i);
+        }
+        return cells;
+    }
+
+    // sets the cells from first on that differ between window and cells, so that cells the loop
+    // left alone are not written, which would allocate their pages on an UNBOUNDED tape
+    private static void write(Tape tape, int first, int[] window, int[] cells) {
+        for (int i = 0; i < cells.length; i++) {
+            if (cells[i] != window[i]) {
+                tape.set(first + i, cells[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package Execution;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * A fixed-size WRAPPING or BOUNDED tape kept outside of the Java heap in a MemorySegment, so that a
+ * large tape neither needs a larger heap nor gets copied around by the garbage collector.
+ * allocate reserves the cells in an Arena of their own; map puts them into a memory-mapped file,
+ * which other processes can watch while the program runs and which keeps the final tape after it.
+ * The cells are freed, and a mapped file written out, by close. There is one subclass per
+ * CellWidth, and every access goes through a constant ValueLayout, so get, set and add compile to
+ * loads and stores without allocating; the segment still checks that the arena is open, which makes
+ * them somewhat slower than on an ArrayTape.
+ * Engines use it through the Tape interface; compiled code calls it like an UNBOUNDED tape.
+ * Like every Tape it addresses cells by int, so it holds at most Integer.MAX_VALUE cells even though
+ * a segment could be larger: a tape of byte cells is capped at 2 GB.
+ */
+public abstract class MemoryTape implements Tape, AutoCloseable {
+    final TapeMode mode;
+    final int size;
+    final MemorySegment cells;
+    private final Arena arena;
+    private final boolean mapped;
+
+    MemoryTape(TapeMode mode, int size, MemorySegment cells, Arena arena, boolean mapped) {
+        this.mode = mode;
+        this.size = size;
+        this.cells = cells;
+        this.arena = arena;
+        this.mapped = mapped;
+    }
+
+    // a tape of size zeroed cells in memory that is not part of the heap
+    public static MemoryTape allocate(TapeMode mode, int size, CellWidth width) {
+        check(mode, size);
+        Arena arena = Arena.ofShared();
+        int cellBytes = width.bits() / 8;
+        return create(mode, size, width, arena.allocate((long) size * cellBytes, cellBytes), arena, false);
+    }
+
+    // a tape of size zeroed cells in file, which is created or truncated first; the cells are stored
+    // in the native byte order
+    public static MemoryTape map(Path file, TapeMode mode, int size, CellWidth width) throws IOException {
+        check(mode, size);
+        Arena arena = Arena.ofShared();
+        long bytes = (long) size * (width.bits() / 8);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MemorySegment cells = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes, arena);
+            return create(mode, size, width, cells, arena, true);
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    private static void check(TapeMode mode, int size) {
+        if (mode == TapeMode.UNBOUNDED) {
+            throw new IllegalArgumentException("An off-heap tape has a fixed size, it cannot be UNBOUNDED");
+        }
+        if (size < 1) {
+            throw new IllegalArgumentException("An off-heap tape needs at least one cell, not " + size);
+        }
+    }
+
+    private static MemoryTape create(TapeMode mode, int size, CellWidth width, MemorySegment cells, Arena arena,
+                                     boolean mapped) {
+        switch (width) {
+            case BYTE:
+                return new Bytes(mode, size, cells, arena, mapped);
+            case SHORT:
+                return new Shorts(mode, size, cells, arena, mapped);
+            default:
+                return new Ints(mode, size, cells, arena, mapped);
+        }
+    }
+
+    @Override
+    public TapeMode mode() {
+        return mode;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    // writes the cells of a mapped tape to its file and frees the memory of the tape; the tape must
+    // not be used afterwards
+    @Override
+    public void close() {
+        if (mapped) {
+            cells.force();
+        }
+        arena.close();
+    }
+
+    @Override
+    public int move(int pointer, int delta) {
+        int index = pointer + delta;
+        if (index < 0 || index >= size) {
+            index = outside(index);
+        }
+        return index;
+    }
+
+    // slow path for an index that is not on the tape, as in ArrayTape
+    final int outside(int index) {
+        if (mode == TapeMode.WRAPPING) {
+            return Math.floorMod(index, size);
+        }
+        throw ArrayTape.outOfBounds(index, size);
+    }
+
+    static final class Bytes extends MemoryTape {
+        private static final ValueLayout.OfByte CELL = ValueLayout.JAVA_BYTE;
+
+        Bytes(TapeMode mode, int size, MemorySegment cells, Arena arena, boolean mapped) {
+            super(mode, size, cells, arena, mapped);
+        }
+
+        @Override
+        public CellWidth width() {
+            return CellWidth.BYTE;
+        }
+
+        @Override
+        public int get(int index) {
+            if (index < 0 || index >= size) index = outside(index);
+            return cells.getAtIndex(CELL, index);
+        }
+
+        @Override
+        public void set(int index, int value) {
+            if (index < 0 || index >= size) index = outside(index);
+            cells.setAtIndex(CELL, index, (byte) value);
+        }
+
+        @Override
+        public void add(int index, int delta) {
+            if (index < 0 || index >= size) index = outside(index);
+            cells.setAtIndex(CELL, index, (byte) (cells.getAtIndex(CELL, index) + delta));
+        }
+    }
+
+    static final class Shorts extends MemoryTape {
+        private static final ValueLayout.OfShort CELL = ValueLayout.JAVA_SHORT;
+
+        Shorts(TapeMode mode, int size, MemorySegment cells, Arena arena, boolean mapped) {
+            super(mode, size, cells, arena, mapped);
+        }
+
+        @Override
+        public CellWidth width() {
+            return CellWidth.SHORT;
+        }
+
+        @Override
+        public int get(int index) {
+            if (index < 0 || index >= size) index = outside(index);
+            return cells.getAtIndex(CELL, index);
+        }
+
+        @Override
+        public void set(int index, int value) {
+            if (index < 0 || index >= size) index = outside(index);
+            cells.setAtIndex(CELL, index, (short) value);
+        }
+
+        @Override
+        public void add(int index, int delta) {
+            if (index < 0 || index >= size) index = outside(index);
+            cells.setAtIndex(CELL, index, (short) (cells.getAtIndex(CELL, index) + delta));
+        }
+    }
+
+    static final class Ints extends MemoryTape {
+        private static final ValueLayout.OfInt CELL = ValueLayout.JAVA_INT;
+
+        Ints(TapeMode mode, int size, MemorySegment cells, Arena arena, boolean mapped) {
+            super(mode, size, cells, arena, mapped);
+        }
+
+        @Override
+        public CellWidth width() {
+            return CellWidth.INT;
+        }
+
+        @Override
+        public int get(int index) {
+            if (index < 0 || index >= size) index = outside(index);
+            return cells.getAtIndex(CELL, index);
+        }
+
+        @Override
+        public void set(int index, int value) {
+            if (index < 0 || index >= size) index = outside(index);
+            cells.setAtIndex(CELL, index, value);
+        }
+
+        @Override
+        public void add(int index, int delta) {
+            if (index < 0 || index >= size) index = outside(index);
+            cells.setAtIndex(CELL, index, cells.getAtIndex(CELL, index) + delta);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package Execution;
+
+// opcodes of the compact instruction representation used by the engines
+// every instruction is an opcode plus an int operand and a cell offset, see Program
+public final class OpCode {
+    public static final int ADD = 0;              // add operand to the cell at the pointer
+    public static final int MOVE = 1;             // move the data pointer by operand cells
+    public static final int OUTPUT = 2;           // output the cell at the pointer
+    public static final int INPUT = 3;            // read a byte into the cell at the pointer
+    public static final int JUMP_IF_ZERO = 4;     // [ : operand is the index of the matching ]
+    public static final int JUMP_IF_NOT_ZERO = 5; // ] : operand is the index of the matching [
+    public static final int CLEAR = 6;            // set the cell at the pointer to zero, e.g. [-]
+    public static final int MUL_ADD = 7;          // add operand times the cell at the pointer to the cell at offset
+    public static final int SCAN = 8;             // move the pointer by operand until its cell is zero, e.g. [>]
+
+    private static final String[] NAMES = {
+            "ADD", "MOVE", "OUTPUT", "INPUT", "JUMP_IF_ZERO", "JUMP_IF_NOT_ZERO", "CLEAR", "MUL_ADD", "SCAN"
+    };
+
+    private OpCode() {
+    }
+
+    public static String name(int opcode) {
+        return NAMES[opcode];
+    }
+}
@@ -0,0 +1,203 @@
+package Execution;
+
+import java.util.Arrays;
+
+/*
+ * Optimization passes over a parsed Program.
+ *
+ * Idiom recognition: a loop whose body only adds and moves, returns the pointer to where it started
+ * and changes the loop cell by exactly -1 per iteration runs (loop cell) times, so every other cell
+ * it touches just gets (loop cell * delta) added to it. Such loops are rewritten into one MUL_ADD per
+ * touched cell followed by a CLEAR of the loop cell:
+ *   [-]        -> CLEAR
+ *   [->+<]     -> MUL_ADD 1 @1, CLEAR
+ *   [->+>+<<]  -> MUL_ADD 1 @1, MUL_ADD 1 @2, CLEAR
+ *   [-<<+>>]   -> MUL_ADD 1 @-2, CLEAR
+ * [+] also clears the cell (it counts up until it wraps to zero), so it becomes a CLEAR as well.
+ * The operand of a CLEAR is the step of the loop it replaced, -1 or 1, so that Budget can still
+ * charge every iteration the loop would have run.
+ * A loop entered on a zero cell does not run at all, so every engine skips a MUL_ADD while the loop
+ * cell is zero; otherwise [-<+>] on the first cell of a BOUNDED tape would step off it.
+ * A loop that only moves searches the tape for a zero cell with a constant stride and becomes a
+ * SCAN, which ScanLoops runs without stepping through the loop:
+ *   [>]        -> SCAN 1
+ *   [<<<<]     -> SCAN -4
+ *
+ * Offset addressing: inside a straight-line block (the code between two brackets) the pointer moves
+ * are folded away. Each instruction addresses its cell by an offset from the pointer at the start of
+ * the block and a single MOVE with the net movement ends the block:
+ *   >+>+<<-    -> ADD 1 @1, ADD 1 @2, ADD -1 @0
+ *   >>.<+      -> OUTPUT @2, ADD 1 @1, MOVE 1
+ * Adds to the same cell are merged until something reads that cell (I/O, CLEAR or MUL_ADD).
+ */
+public final class Optimizer {
+    // loops with more distinct cells than this are left alone; real idioms touch only a few
+    private static final int MAX_IDIOM_CELLS = 16;
+
+    private Optimizer() {
+    }
+
+    public static Program optimize(Program program) {
+        return foldPointerMoves(recognizeIdioms(program));
+    }
+
+    static Program recognizeIdioms(Program program) {
+        InstructionBuffer buffer = new InstructionBuffer();
+        int[] cellOffsets = new int[MAX_IDIOM_CELLS];
+        int[] cellDeltas = new int[MAX_IDIOM_CELLS];
+
+        int i = 0;
+        while (i < program.length) {
+            int opcode = program.opcodes[i];
+
+            if (opcode == OpCode.JUMP_IF_ZERO) {
+                int end = program.operands[i];
+                if (end == i + 2 && program.opcodes[i + 1] == OpCode.MOVE && program.operands[i + 1] != 0) {
+                    buffer.add(OpCode.SCAN, program.operands[i + 1], 0, program.costs[end]);
+                    i = end + 1;
+                    continue;
+                }
+
+                int cells = analyzeLoop(program, i + 1, end, cellOffsets, cellDeltas);
+
+                if (cells > 0) {
+                    int loopDelta = cellDeltas[0];
+                    if (loopDelta == -1) {
+                        for (int c = 1; c < cells; c++) {
+                            if (cellDeltas[c] != 0) {
+                                buffer.add(OpCode.MUL_ADD, cellDeltas[c], cellOffsets[c]);
+                            }
+                        }
+                        buffer.add(OpCode.CLEAR, -1, 0, program.costs[end]);
+                        i = end + 1;
+                        continue;
+                    }
+                    if (loopDelta == 1 && isOnlyLoopCell(cellDeltas, cells)) {
+                        buffer.add(OpCode.CLEAR, 1, 0, program.costs[end]);
+                        i = end + 1;
+                        continue;
+                    }
+                }
+            }
+
+            buffer.add(opcode, program.operands[i], program.offsets[i], program.costs[i]);
+            i++;
+        }
+
+        return buffer.toProgram();
+    }
+
+    // simulates one iteration of the loop body [from, to) and records the net delta per touched cell
+    // cell 0 is always the loop cell; returns the number of cells, or 0 if the body is not a pure
+    // balanced loop (it contains I/O, a nested loop, touches too many cells or moves the pointer)
+    private static int analyzeLoop(Program program, int from, int to, int[] cellOffsets, int[] cellDeltas) {
+        int cells = 1;
+        cellOffsets[0] = 0;
+        cellDeltas[0] = 0;
+        int pointer = 0;
+
+        for (int i = from; i < to; i++) {
+            switch (program.opcodes[i]) {
+                case OpCode.MOVE:
+                    pointer += program.operands[i];
+                    break;
+                case OpCode.ADD:
+                    int cell = 0;
+                    while (cell < cells && cellOffsets[cell] != pointer) {
+                        cell++;
+                    }
+                    if (cell == cells) {
+                        if (cells == cellOffsets.length) {
+                            return 0;
+                        }
+                        cellOffsets[cells] = pointer;
+                        cellDeltas[cells] = 0;
+                        cells++;
+                    }
+                    cellDeltas[cell] += program.operands[i];
+                    break;
+                default:
+                    return 0;
+            }
+        }
+
+        return pointer == 0 ? cells : 0;
+    }
+
+    private static boolean isOnlyLoopCell(int[] cellDeltas, int cells) {
+        for (int c = 1; c < cells; c++) {
+            if (cellDeltas[c] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static Program foldPointerMoves(Program program) {
+        InstructionBuffer buffer = new InstructionBuffer();
+        // pending adds of the current block, in order of the first add to each cell
+        int[] addOffsets = new int[16];
+        int[] addDeltas = new int[16];
+        int adds = 0;
+        int pointer = 0; // net movement since the start of the block
+
+        for (int i = 0; i < program.length; i++) {
+            int opcode = program.opcodes[i];
+            int operand = program.operands[i];
+
+            switch (opcode) {
+                case OpCode.MOVE:
+                    pointer += operand;
+                    break;
+                case OpCode.ADD:
+                    int offset = pointer + program.offsets[i];
+                    int add = 0;
+                    while (add < adds && addOffsets[add] != offset) {
+                        add++;
+                    }
+                    if (add == adds) {
+                        if (adds == addOffsets.length) {
+                            addOffsets = Arrays.copyOf(addOffsets, adds * 2);
+                            addDeltas = Arrays.copyOf(addDeltas, adds * 2);
+                        }
+                        addOffsets[adds] = offset;
+                        addDeltas[adds] = 0;
+                        adds++;
+                    }
+                    addDeltas[add] += operand;
+                    break;
+                case OpCode.OUTPUT:
+                case OpCode.INPUT:
+                case OpCode.CLEAR:
+                    flushAdds(buffer, addOffsets, addDeltas, adds);
+                    adds = 0;
+                    buffer.add(opcode, operand, pointer + program.offsets[i], program.costs[i]);
+                    break;
+                default:
+                    // jumps test the cell at the pointer and MUL_ADD reads it, so the block ends here
+                    flushAdds(buffer, addOffsets, addDeltas, adds);
+                    adds = 0;
+                    if (pointer != 0) {
+                        buffer.add(OpCode.MOVE, pointer, 0);
+                        pointer = 0;
+                    }
+                    buffer.add(opcode, operand, program.offsets[i], program.costs[i]);
+                    break;
+            }
+        }
+
+        flushAdds(buffer, addOffsets, addDeltas, adds);
+        if (pointer != 0) {
+            buffer.add(OpCode.MOVE, pointer, 0);
+        }
+        return buffer.toProgram();
+    }
+
+    private static void flushAdds(InstructionBuffer buffer, int[] addOffsets, int[] addDeltas, int adds) {
+        for (int add = 0; add < adds; add++) {
+            if (addDeltas[add] != 0) {
+                buffer.add(OpCode.ADD, addDeltas[add], addOffsets[add]);
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package Execution;
+
+import java.io.Flushable;
+import java.io.IOException;
+
+// destination of the bytes written by the . instruction
+public interface OutputSink extends Flushable {
+    // writes the low 8 bits of b
+    void write(int b) throws IOException;
+
+    // called before every , instruction, so that a prompt can be flushed before input is read
+    void beforeInput() throws IOException;
+}
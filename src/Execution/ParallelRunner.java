@@ -0,0 +1,166 @@
+package Execution;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Runs one program against many inputs in parallel, such as the input vectors of a test harness.
+ * The program is compiled once by BytecodeCompiler when the runner is created; the CompiledProgram
+ * keeps no state between runs, so every thread runs the same code. Programs too large to compile run
+ * in IrInterpreter instead, which keeps no state either.
+ * run starts a fixed number of workers on virtual threads, each with its own tape, input and output
+ * buffer, which it clears and reuses for every input it takes. Workers take the next input as soon as
+ * they are done with one, so a few long runs do not hold up the rest, and results are returned in the
+ * order of the inputs.
+ */
+public final class ParallelRunner {
+    private final Program program;
+    private final CompiledProgram compiled; // null if the program is too large to compile
+    private final TapeMode tapeMode;
+    private final int tapeSize;
+    private final CellWidth cellWidth;
+    private final EofPolicy eofPolicy;
+    private final ExecutionLimits limits;
+
+    // every run gets its own Budget of limits and starts on a zeroed tape of the given mode, size and width
+    public ParallelRunner(Program program, TapeMode tapeMode, int tapeSize, CellWidth cellWidth, EofPolicy eofPolicy,
+                          ExecutionLimits limits) {
+        this.program = program;
+        this.tapeMode = tapeMode;
+        this.tapeSize = tapeSize;
+        this.cellWidth = cellWidth;
+        this.eofPolicy = eofPolicy;
+        this.limits = limits;
+
+        CompiledProgram compiled;
+        try {
+            compiled = BytecodeCompiler.compile(program, tapeMode, cellWidth, limits.isLimited());
+        } catch (RuntimeException e) {
+            compiled = null;
+        }
+        this.compiled = compiled;
+    }
+
+    // whether the runs execute compiled code, and not the IR interpreter
+    public boolean isCompiled() {
+        return compiled != null;
+    }
+
+    // runs the program once per input on workers threads, or one per processor if workers is 0
+    public List<RunResult> run(List<byte[]> inputs, int workers) {
+        RunResult[] results = new RunResult[inputs.size()];
+        AtomicInteger next = new AtomicInteger();
+        int count = Math.min(workers > 0 ? workers : Runtime.getRuntime().availableProcessors(), inputs.size());
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+        try {
+            List<Future<?>> futures = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                futures.add(executor.submit(() -> {
+                    Worker worker = new Worker();
+                    int index;
+                    while ((index = next.getAndIncrement()) < inputs.size()) {
+                        results[index] = worker.run(inputs.get(index));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            return Arrays.asList(results);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Worker failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Runs interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // the tape and buffers of one worker thread
+    private final class Worker {
+        private final Tape fixedTape = tapeMode != TapeMode.UNBOUNDED ? tapeMode.newTape(tapeSize, cellWidth) : null;
+        private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        private final BufferedOutputSink sink = new BufferedOutputSink(output, FlushPolicy.EXIT);
+        private final ArrayInput in = new ArrayInput(eofPolicy);
+
+        RunResult run(byte[] input) {
+            long start = System.nanoTime();
+            ExecutionResult.Status status = ExecutionResult.Status.COMPLETED;
+            String error = null;
+
+            // a fixed tape is cleared for every run, an unbounded one only allocates what the run writes
+            Tape tape = fixedTape;
+            if (tape != null) {
+                ((ArrayTape) tape).clear();
+            } else {
+                tape = tapeMode.newTape(tapeSize, cellWidth);
+            }
+            in.reset(input);
+            Budget budget = limits.start();
+            OutputSink out = limits.isLimited() ? budget.limit(sink) : sink;
+
+            try {
+                if (compiled != null) {
+                    compiled.execute(tape, in, out, budget);
+                } else {
+                    new IrInterpreter().execute(program, tape, in, out, budget);
+                }
+            } catch (LimitExceededException e) {
+                status = e.getStatus();
+                error = e.getMessage();
+            } catch (RuntimeException e) {
+                // engines throw failed input and output as an UncheckedIOException
+                status = ExecutionResult.Status.FAILED;
+                error = e.getMessage();
+            }
+
+            try {
+                // the output of a run that was stopped is still in the buffer
+                sink.flush();
+            } catch (IOException e) {
+                throw new RuntimeException(e); // cannot happen on a ByteArrayOutputStream
+            }
+            byte[] bytes = output.toByteArray();
+            output.reset();
+            return new RunResult(bytes, System.nanoTime() - start, status, error);
+        }
+    }
+
+    // an InputSource over an input in memory, which a worker points at the input of every run
+    private static final class ArrayInput implements InputSource {
+        private final EofPolicy eofPolicy;
+        private byte[] input = new byte[0];
+        private int position = 0;
+
+        ArrayInput(EofPolicy eofPolicy) {
+            this.eofPolicy = eofPolicy;
+        }
+
+        void reset(byte[] input) {
+            this.input = input;
+            this.position = 0;
+        }
+
+        @Override
+        public int read(int current) {
+            if (position == input.length) {
+                return eofPolicy.apply(current);
+            }
+            return input[position++] & 0xFF;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
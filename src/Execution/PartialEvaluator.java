@@ -0,0 +1,199 @@
+package Execution;
+
+import java.io.ByteArrayOutputStream;
+
+/*
+ * Runs the part of a Program that does not depend on its input ahead of time.
+ * Everything up to the first , only depends on the program, so it is run once here on a tape of
+ * the mode, size and width the program will run on, up to that , or until an instruction budget
+ * runs out. The result replaces that prefix: a program that carries the output written so far,
+ * starts with one ADD per nonzero cell and a MOVE to the data pointer, and then goes on with the
+ * remaining instructions.
+ * Top-level instructions run at most once, so the remaining program starts at a top-level
+ * instruction: when the run stops inside a loop, it restarts from scratch and stops at the [ of the
+ * outermost loop instead, and that loop runs again when the program is launched. A run that fails,
+ * e.g. on the edge of a BOUNDED tape, is cut off the same way, so the error happens at run time.
+ * The evaluated program depends on the tape, which ProgramCache.load keeps in its key.
+ */
+public final class PartialEvaluator {
+    public static final long DEFAULT_BUDGET = 10_000_000; // instructions, as counted by Budget
+
+    // a tape with more nonzero cells than this takes longer to set up than to compute
+    private static final int MAX_CELLS = 4096;
+
+    private final TapeMode mode;
+    private final int tapeSize;
+    private final CellWidth width;
+    private final long budget;
+
+    public PartialEvaluator(TapeMode mode, int tapeSize, CellWidth width, long budget) {
+        this.mode = mode;
+        this.tapeSize = mode == TapeMode.UNBOUNDED ? 0 : tapeSize; // unused by UNBOUNDED tapes
+        this.width = width;
+        this.budget = budget;
+    }
+
+    // returns program with its input-independent prefix replaced, or program itself if none
+    public Program evaluate(Program program) {
+        boolean[] topLevel = topLevel(program);
+
+        // first find how far the program gets, then stop at the top-level instruction before that
+        Prefix probe = new Prefix(program, topLevel, mode.newTape(tapeSize, width), null);
+        int end = probe.run(-1, new ExecutionLimits(budget, 0, 0).start());
+        if (end == 0) {
+            return program;
+        }
+        Prefix prefix = new Prefix(program, topLevel, mode.newTape(tapeSize, width), new ByteArrayOutputStream());
+        prefix.run(end, Budget.unlimited());
+
+        // the tape is set up even when nothing is left to run, as it is what the program leaves behind
+        InstructionBuffer buffer = new InstructionBuffer();
+        if (!prefix.writeTape(buffer)) {
+            return program;
+        }
+        for (int i = end; i < program.length; i++) {
+            buffer.add(program.opcodes[i], program.operands[i], program.offsets[i], program.costs[i]);
+        }
+        return buffer.toProgram(prefix.output.toByteArray());
+    }
+
+    // the part of the ProgramCache key that tells evaluated programs of the same source apart
+    String key() {
+        return mode.name().toLowerCase() + "-" + tapeSize + "-" + width.name().toLowerCase() + "-" + budget;
+    }
+
+    // marks the instructions outside of every loop; a ] belongs to its loop, the [ does not
+    private static boolean[] topLevel(Program program) {
+        boolean[] topLevel = new boolean[program.length];
+        int depth = 0;
+        for (int i = 0; i < program.length; i++) {
+            topLevel[i] = depth == 0;
+            if (program.opcodes[i] == OpCode.JUMP_IF_ZERO) {
+                depth++;
+            } else if (program.opcodes[i] == OpCode.JUMP_IF_NOT_ZERO) {
+                depth--;
+            }
+        }
+        return topLevel;
+    }
+
+    private static final class Prefix {
+        final Program program;
+        final boolean[] topLevel;
+        final Tape tape;
+        final ByteArrayOutputStream output; // null when only probing
+        int pointer = 0;
+
+        Prefix(Program program, boolean[] topLevel, Tape tape, ByteArrayOutputStream output) {
+            this.program = program;
+            this.topLevel = topLevel;
+            this.tape = tape;
+            this.output = output;
+        }
+
+        // runs until the top-level instruction stop, the first input, the end of the budget or an
+        // error, and returns the last top-level instruction it started
+        int run(int stop, Budget budget) {
+            int[] opcodes = program.opcodes;
+            int[] operands = program.operands;
+            int[] offsets = program.offsets;
+            int[] costs = program.costs;
+            int bits = tape.width().bits();
+            int length = program.length;
+            int start = 0;
+            int PC = 0;
+
+            try {
+                while (PC < length) {
+                    if (topLevel[PC]) {
+                        if (PC == stop) {
+                            return PC;
+                        }
+                        start = PC;
+                    }
+
+                    switch (opcodes[PC]) {
+                        case OpCode.ADD:
+                            tape.add(pointer + offsets[PC], operands[PC]);
+                            break;
+                        case OpCode.MOVE:
+                            pointer = tape.move(pointer, operands[PC]);
+                            break;
+                        case OpCode.OUTPUT:
+                            int value = tape.get(pointer + offsets[PC]);
+                            if (output != null) {
+                                output.write(value);
+                            }
+                            break;
+                        case OpCode.INPUT:
+                            return start;
+                        case OpCode.CLEAR:
+                            budget.tickClear(tape.get(pointer + offsets[PC]), operands[PC], costs[PC], bits);
+                            tape.set(pointer + offsets[PC], 0);
+                            break;
+                        case OpCode.MUL_ADD:
+                            // the loop the MUL_ADD came from would not have run on a zero cell, nor touched its neighbours
+                            int factor = tape.get(pointer);
+                            if (factor != 0) {
+                                tape.add(pointer + offsets[PC], factor * operands[PC]);
+                            }
+                            break;
+                        case OpCode.SCAN:
+                            pointer = ScanLoops.scan(tape, pointer, operands[PC], costs[PC], budget);
+                            break;
+                        case OpCode.JUMP_IF_ZERO:
+                            if (tape.get(pointer) == 0) {
+                                PC = operands[PC];
+                            }
+                            break;
+                        case OpCode.JUMP_IF_NOT_ZERO:
+                            budget.tick(costs[PC]);
+                            if (tape.get(pointer) != 0) {
+                                PC = operands[PC];
+                            }
+                            break;
+                    }
+
+                    PC++;
+                }
+                return length;
+            } catch (RuntimeException e) {
+                // out of budget or off the tape: the program gets there again when it is launched
+                return start;
+            }
+        }
+
+        // adds the instructions that set up the tape and data pointer, unless there are too many cells
+        boolean writeTape(InstructionBuffer buffer) {
+            int cells = 0;
+            if (tape instanceof ArrayTape) {
+                for (int i = 0; i < ((ArrayTape) tape).size(); i++) {
+                    if (tape.get(i) != 0 && ++cells <= MAX_CELLS) {
+                        buffer.add(OpCode.ADD, tape.get(i), i);
+                    }
+                }
+            } else {
+                SegmentedTape segmented = (SegmentedTape) tape;
+                Object[] pages = segmented.pages();
+                for (int slot = 0; slot < pages.length; slot++) {
+                    if (pages[slot] == null) {
+                        continue;
+                    }
+                    int first = (segmented.firstPage() + slot) * SegmentedTape.PAGE_SIZE;
+                    for (int i = first; i < first + SegmentedTape.PAGE_SIZE; i++) {
+                        if (tape.get(i) != 0 && ++cells <= MAX_CELLS) {
+                            buffer.add(OpCode.ADD, tape.get(i), i);
+                        }
+                    }
+                }
+            }
+            if (cells > MAX_CELLS) {
+                return false;
+            }
+            if (pointer != 0) {
+                buffer.add(OpCode.MOVE, pointer, 0);
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package Execution;
+
+/*
+ * Static analysis of the cells a Program can reach, relative to the data pointer.
+ * A loop is balanced when its body leaves the pointer where it found it and every loop inside it is
+ * balanced too; however often it runs, it then only touches cells between pointer + low and
+ * pointer + high of its entry. A straight-line block (the instructions between two brackets) always
+ * touches the cells between pointer + low and pointer + high of its first instruction. Both ranges
+ * include every cell the pointer passes over, not only the cells that are accessed.
+ * BytecodeCompiler checks such a range once on entry and runs the loop or block without wrapping or
+ * checking its indexes when it lies on the tape. A loop containing a SCAN, or one that moves the
+ * pointer by a net amount per iteration, has no range and is checked at every step.
+ */
+final class PointerRanges {
+    private final Program program;
+    private final boolean[] known;
+    private final int[] low;
+    private final int[] high;
+    private final int[] blockEnd;
+
+    private PointerRanges(Program program) {
+        this.program = program;
+        this.known = new boolean[program.length];
+        this.low = new int[program.length];
+        this.high = new int[program.length];
+        this.blockEnd = new int[program.length];
+    }
+
+    static PointerRanges analyze(Program program) {
+        PointerRanges ranges = new PointerRanges(program);
+        // inner loops end first, so their ranges are known when the loop around them is analyzed
+        for (int i = 0; i < program.length; i++) {
+            if (program.opcodes[i] == OpCode.JUMP_IF_NOT_ZERO) {
+                ranges.analyzeLoop(program.operands[i], i);
+            }
+        }
+        for (int i = program.length - 1; i >= 0; i--) {
+            boolean nextInBlock = i + 1 < program.length && isBlock(program.opcodes[i + 1]);
+            ranges.blockEnd[i] = nextInBlock ? ranges.blockEnd[i + 1] : i + 1;
+        }
+        for (int i = 0; i < program.length; i++) {
+            if (isBlock(program.opcodes[i]) && (i == 0 || !isBlock(program.opcodes[i - 1]))) {
+                ranges.analyzeBlock(i);
+            }
+        }
+        return ranges;
+    }
+
+    // instructions that can be part of a straight-line block
+    static boolean isBlock(int opcode) {
+        return opcode != OpCode.JUMP_IF_ZERO && opcode != OpCode.JUMP_IF_NOT_ZERO && opcode != OpCode.SCAN;
+    }
+
+    // whether the loop or block starting at index has a range
+    boolean isKnown(int index) {
+        return known[index];
+    }
+
+    int low(int index) {
+        return low[index];
+    }
+
+    int high(int index) {
+        return high[index];
+    }
+
+    // the instruction after the block that index is part of
+    int blockEnd(int index) {
+        return blockEnd[index];
+    }
+
+    private void analyzeLoop(int open, int close) {
+        int position = 0;
+        int min = 0;
+        int max = 0;
+
+        int i = open + 1;
+        while (i < close) {
+            int opcode = program.opcodes[i];
+            switch (opcode) {
+                case OpCode.MOVE:
+                    position += program.operands[i];
+                    break;
+                case OpCode.SCAN:
+                    return;
+                case OpCode.JUMP_IF_ZERO:
+                    if (!known[i]) {
+                        return;
+                    }
+                    min = Math.min(min, position + low[i]);
+                    max = Math.max(max, position + high[i]);
+                    i = program.operands[i];
+                    break;
+                default:
+                    min = Math.min(min, position + program.offsets[i]);
+                    max = Math.max(max, position + program.offsets[i]);
+                    break;
+            }
+            min = Math.min(min, position);
+            max = Math.max(max, position);
+            i++;
+        }
+
+        if (position == 0) {
+            known[open] = true;
+            low[open] = min;
+            high[open] = max;
+        }
+    }
+
+    private void analyzeBlock(int start) {
+        int position = 0;
+        int min = 0;
+        int max = 0;
+        for (int i = start; i < blockEnd[start]; i++) {
+            if (program.opcodes[i] == OpCode.MOVE) {
+                position += program.operands[i];
+            } else {
+                min = Math.min(min, position + program.offsets[i]);
+                max = Math.max(max, position + program.offsets[i]);
+            }
+            min = Math.min(min, position);
+            max = Math.max(max, position);
+        }
+        known[start] = true;
+        low[start] = min;
+        high[start] = max;
+    }
+}
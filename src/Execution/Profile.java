@@ -0,0 +1,224 @@
+package Execution;
+
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * What the Profiler recorded during one run, with two ways of reporting it.
+ * writeHeatMap prints the hottest loops and then the source with a digit under every command:
+ * 0 for commands that never ran and 1 to 9 on a logarithmic scale up to the hottest instruction.
+ * toJson gives the same numbers per instruction and per loop, with their line and column.
+ */
+public final class Profile {
+    private static final int HOT_LOOPS = 10;
+
+    private final byte[] source;
+    private final Program program;
+    private final int[] positions;
+    private final long[] counts;
+    private final long[] iterations;
+    private final int lowestCell;
+    private final int highestCell;
+    private final long nanos;
+    private final String error;
+    private final int[] lineStarts;
+    private final long[] countsBefore; // countsBefore[i] is the sum of counts[0..i-1]
+
+    Profile(byte[] source, Program program, int[] positions, long[] counts, long[] iterations,
+            int lowestCell, int highestCell, long nanos, String error) {
+        this.source = source;
+        this.program = program;
+        this.positions = positions;
+        this.counts = counts;
+        this.iterations = iterations;
+        this.lowestCell = lowestCell;
+        this.highestCell = highestCell;
+        this.nanos = nanos;
+        this.error = error;
+
+        int lines = 1;
+        for (byte b : source) {
+            if (b == '\n') lines++;
+        }
+        lineStarts = new int[lines];
+        for (int i = 0, line = 1; i < source.length; i++) {
+            if (source[i] == '\n') lineStarts[line++] = i + 1;
+        }
+
+        countsBefore = new long[counts.length + 1];
+        for (int i = 0; i < counts.length; i++) {
+            countsBefore[i + 1] = countsBefore[i] + counts[i];
+        }
+    }
+
+    // instructions executed in total; a run of +, -, > or < counts as one
+    public long instructions() {
+        return countsBefore[counts.length];
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    // null when the program ran to the end
+    public String getError() {
+        return error;
+    }
+
+    public void writeHeatMap(PrintStream out) {
+        out.println("profile: " + instructions() + " instructions in " + nanos / 1_000_000 + " ms, cells "
+                + lowestCell + ".." + highestCell + " visited" + (error != null ? ", failed: " + error : ""));
+
+        List<Integer> loops = loopsByIterations();
+        if (!loops.isEmpty()) {
+            out.println("hottest loops:");
+        }
+        for (int i = 0; i < Math.min(HOT_LOOPS, loops.size()); i++) {
+            int open = loops.get(i);
+            out.printf("  line %d, column %d: %d iterations, %.1f%% of instructions%n",
+                    line(positions[open]), column(positions[open]), iterations[open],
+                    100.0 * instructionsIn(open) / Math.max(1, instructions()));
+        }
+
+        byte[] heat = heat();
+        out.println("heat map:");
+        for (int line = 0; line < lineStarts.length; line++) {
+            int from = lineStarts[line];
+            int to = line + 1 < lineStarts.length ? lineStarts[line + 1] - 1 : source.length;
+            if (to > from && source[to - 1] == '\r') {
+                to--;
+            }
+
+            StringBuilder marks = new StringBuilder();
+            boolean hasCommands = false;
+            for (int i = from; i < to; i++) {
+                if (heat[i] != 0) {
+                    marks.append((char) heat[i]);
+                    hasCommands = true;
+                } else {
+                    marks.append(source[i] == '\t' ? '\t' : ' ');
+                }
+            }
+            if (hasCommands) {
+                out.printf("%6d | %s%n", line + 1, new String(source, from, to - from, StandardCharsets.ISO_8859_1));
+                out.printf("%6s | %s%n", "", marks.toString().stripTrailing());
+            }
+        }
+    }
+
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"instructions\": ").append(instructions()).append(",\n");
+        json.append("  \"nanos\": ").append(nanos).append(",\n");
+        json.append("  \"lowestCell\": ").append(lowestCell).append(",\n");
+        json.append("  \"highestCell\": ").append(highestCell).append(",\n");
+        json.append("  \"error\": ").append(error == null ? "null" : quote(error)).append(",\n");
+
+        json.append("  \"loops\": [");
+        String separator = "\n";
+        for (int open : loopsByIterations()) {
+            int close = program.operand(open);
+            json.append(separator).append("    {\"line\": ").append(line(positions[open]))
+                    .append(", \"column\": ").append(column(positions[open]))
+                    .append(", \"endLine\": ").append(line(positions[close]))
+                    .append(", \"endColumn\": ").append(column(positions[close]))
+                    .append(", \"iterations\": ").append(iterations[open])
+                    .append(", \"instructions\": ").append(instructionsIn(open)).append('}');
+            separator = ",\n";
+        }
+        json.append("\n  ],\n");
+
+        json.append("  \"instructionCounts\": [");
+        separator = "\n";
+        for (int i = 0; i < counts.length; i++) {
+            json.append(separator).append("    {\"line\": ").append(line(positions[i]))
+                    .append(", \"column\": ").append(column(positions[i]))
+                    .append(", \"opcode\": \"").append(OpCode.name(program.opcode(i))).append('"')
+                    .append(", \"operand\": ").append(program.operand(i))
+                    .append(", \"count\": ").append(counts[i]).append('}');
+            separator = ",\n";
+        }
+        json.append("\n  ]\n}\n");
+        return json.toString();
+    }
+
+    // the position of every [ that was entered, most iterations first
+    private List<Integer> loopsByIterations() {
+        List<Integer> loops = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (program.opcode(i) == OpCode.JUMP_IF_ZERO && iterations[i] > 0) {
+                loops.add(i);
+            }
+        }
+        loops.sort((a, b) -> Long.compare(iterations[b], iterations[a]));
+        return loops;
+    }
+
+    // instructions executed inside the loop starting at open, brackets included
+    private long instructionsIn(int open) {
+        return countsBefore[program.operand(open) + 1] - countsBefore[open];
+    }
+
+    // a digit for every command in the source, 0 where it never ran and otherwise 1 to 9 by log of its count
+    private byte[] heat() {
+        long hottest = 1;
+        for (long count : counts) {
+            hottest = Math.max(hottest, count);
+        }
+        double scale = Math.log(hottest) + 1;
+
+        byte[] heat = new byte[source.length];
+        boolean inComment = false;
+        int instruction = -1;
+        for (int i = 0; i < source.length; i++) {
+            while (instruction + 1 < positions.length && positions[instruction + 1] <= i) {
+                instruction++;
+            }
+            byte c = source[i];
+            if (c == '\n') {
+                inComment = false;
+            } else if (c == '#') {
+                inComment = true;
+            } else if (!inComment && instruction >= 0 && "+-<>.,[]".indexOf(c) >= 0) {
+                long count = counts[instruction];
+                heat[i] = (byte) (count == 0 ? '0' : '1' + (int) (8 * (Math.log(count) + 1) / scale));
+            }
+        }
+        return heat;
+    }
+
+    private int line(int position) {
+        int low = 0;
+        int high = lineStarts.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (lineStarts[middle] <= position) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low + 1;
+    }
+
+    private int column(int position) {
+        return position - lineStarts[line(position) - 1] + 1;
+    }
+
+    private static String quote(String text) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : text.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -0,0 +1,83 @@
+package Execution;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+/*
+ * An engine that counts while it runs, for finding out where a program spends its time.
+ * It runs the parsed program without the Optimizer, so that every instruction is a run of commands
+ * at a known place in the source, and records how often each instruction ran, how many iterations
+ * each loop made and which cells the data pointer visited; see Profile for the reports.
+ * The counting lives in this separate loop only, so the other engines pay nothing for it.
+ */
+public class Profiler {
+
+    public Profile execute(byte[] source, Tape tape, InputSource in, OutputSink out) {
+        ProgramLoader loader = ProgramLoader.recordingPositions();
+        Program program = loader.parse(ByteBuffer.wrap(source));
+        int[] opcodes = program.opcodes;
+        int[] operands = program.operands;
+        int length = program.length;
+
+        long[] counts = new long[length];
+        long[] iterations = new long[length]; // indexed by the position of the loop's [
+        int lowestCell = 0;
+        int highestCell = 0;
+        String error = null;
+
+        int pointer = 0; // Data Pointer
+        int PC = 0; // Program Counter
+        long start = System.nanoTime();
+
+        try {
+            while (PC < length) {
+                counts[PC]++;
+                switch (opcodes[PC]) {
+                    case OpCode.ADD:
+                        tape.add(pointer, operands[PC]);
+                        break;
+                    case OpCode.MOVE:
+                        pointer = tape.move(pointer, operands[PC]);
+                        if (pointer < lowestCell) {
+                            lowestCell = pointer;
+                        } else if (pointer > highestCell) {
+                            highestCell = pointer;
+                        }
+                        break;
+                    case OpCode.OUTPUT:
+                        out.write(tape.get(pointer));
+                        break;
+                    case OpCode.INPUT:
+                        out.beforeInput();
+                        tape.set(pointer, in.read(tape.get(pointer)));
+                        break;
+                    case OpCode.JUMP_IF_ZERO:
+                        if (tape.get(pointer) == 0) {
+                            PC = operands[PC];
+                        } else {
+                            iterations[PC]++;
+                        }
+                        break;
+                    case OpCode.JUMP_IF_NOT_ZERO:
+                        if (tape.get(pointer) != 0) {
+                            iterations[operands[PC]]++;
+                            PC = operands[PC]; // the [ test is known to pass, continue after it
+                        }
+                        break;
+                }
+
+                PC++;
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e.getMessage(), e);
+        } catch (RuntimeException e) {
+            // keep what was counted up to the failure, it shows where the program went wrong
+            error = e.getMessage();
+        }
+
+        return new Profile(source, program, loader.positions(), counts, iterations, lowestCell, highestCell,
+                System.nanoTime() - start, error);
+    }
+}
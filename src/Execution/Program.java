@@ -0,0 +1,164 @@
+package Execution;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/*
+ * A Brainfuck program translated into a compact instruction array.
+ * Instructions are stored as parallel primitive arrays: opcodes[i] is one of the OpCode constants
+ * and operands[i] is its argument. Runs of + and - become a single ADD, runs of > and < become a
+ * single MOVE, and every character that is not a command is dropped. parseCommands keeps every
+ * command as an instruction of its own instead, for the ReferenceInterpreter.
+ * Instructions produced by the Optimizer may also address a cell relative to the data pointer
+ * through offsets[i]; the parser always leaves it at 0.
+ * Brackets are matched while parsing, so each jump already holds the index of its target.
+ * costs[i] is what Budget charges for one iteration of a loop: on a ] the number of commands in the
+ * source of its loop, brackets included, and on a SCAN or CLEAR that of the loop it replaced. As it
+ * is counted on the source, every engine charges the same for a run however it optimizes it.
+ * A program produced by the PartialEvaluator also carries output that was computed ahead of time;
+ * every engine writes it before running the first instruction.
+ */
+public final class Program {
+    final int[] opcodes;
+    final int[] operands;
+    final int[] offsets;
+    final int[] costs;
+    final int length;
+    final byte[] output;
+
+    Program(int[] opcodes, int[] operands, int[] offsets, int[] costs, int length, byte[] output) {
+        this.opcodes = opcodes;
+        this.operands = operands;
+        this.offsets = offsets;
+        this.costs = costs;
+        this.length = length;
+        this.output = output;
+    }
+
+    public static Program parse(String source) {
+        return parse(source, true);
+    }
+
+    // one instruction per command of the source, for the ReferenceInterpreter
+    public static Program parseCommands(String source) {
+        return parse(source, false);
+    }
+
+    private static Program parse(String source, boolean folding) {
+        InstructionBuffer buffer = new InstructionBuffer();
+        int[] openPositions = new int[16];
+        int depth = 0;
+
+        for (int i = 0; i < source.length(); i++) {
+            char c = source.charAt(i);
+            int opcode;
+            int operand = 0;
+
+            switch (c) {
+                case '+':
+                    opcode = OpCode.ADD;
+                    operand = 1;
+                    break;
+                case '-':
+                    opcode = OpCode.ADD;
+                    operand = -1;
+                    break;
+                case '>':
+                    opcode = OpCode.MOVE;
+                    operand = 1;
+                    break;
+                case '<':
+                    opcode = OpCode.MOVE;
+                    operand = -1;
+                    break;
+                case '.':
+                    opcode = OpCode.OUTPUT;
+                    break;
+                case ',':
+                    opcode = OpCode.INPUT;
+                    break;
+                case '[':
+                    opcode = OpCode.JUMP_IF_ZERO;
+                    if (depth == openPositions.length) {
+                        openPositions = Arrays.copyOf(openPositions, depth * 2);
+                    }
+                    openPositions[depth++] = i;
+                    break;
+                case ']':
+                    opcode = OpCode.JUMP_IF_NOT_ZERO;
+                    if (depth == 0) {
+                        throw new RuntimeException("Unmatched ] bracket at position " + i);
+                    }
+                    depth--;
+                    break;
+                default:
+                    continue; // not a command
+            }
+
+            if (folding && (opcode == OpCode.ADD || opcode == OpCode.MOVE)) {
+                buffer.addFolded(opcode, operand); // runs of +/- and >/< become one instruction
+                continue;
+            }
+
+            buffer.addCommand(opcode, operand);
+        }
+
+        if (depth > 0) {
+            StringBuilder positions = new StringBuilder();
+            for (int i = 0; i < depth; i++) {
+                if (i > 0) positions.append(", ");
+                positions.append(openPositions[i]);
+            }
+            throw new RuntimeException("Unmatched [ bracket at position " + positions);
+        }
+
+        return buffer.toProgram();
+    }
+
+    public int size() {
+        return length;
+    }
+
+    public int opcode(int index) {
+        return opcodes[index];
+    }
+
+    public int operand(int index) {
+        return operands[index];
+    }
+
+    public int offset(int index) {
+        return offsets[index];
+    }
+
+    public int cost(int index) {
+        return costs[index];
+    }
+
+    // bytes written before the first instruction; empty unless the program was partially evaluated
+    public int outputLength() {
+        return output.length;
+    }
+
+    void writeOutput(OutputSink out) throws IOException {
+        for (byte b : output) {
+            out.write(b);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        if (output.length > 0) {
+            sb.append("output ").append(output.length).append(" bytes\n");
+        }
+        for (int i = 0; i < length; i++) {
+            sb.append(i).append(": ").append(OpCode.name(opcodes[i])).append(' ').append(operands[i]);
+            if (offsets[i] != 0) {
+                sb.append(" @").append(offsets[i]);
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,342 @@
+package Execution;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Cache of parsed and optimized programs, keyed by the SHA-256 of the program source.
+ * The memory tier keeps the most recently used programs up to a total number of instructions.
+ * The optional disk tier stores one file per program in a directory, so a later run of the same
+ * source skips parsing and optimization altogether. Its files hold the optimized instructions as
+ * an opcode byte followed by zigzag varints for operand and offset and a varint for the cost; jump
+ * targets are not stored but linked again while loading, and the precomputed output of a partially
+ * evaluated program follows as a varint length and its bytes.
+ * Programs partially evaluated for a tape are cached under the source hash plus the tape, so a
+ * later run on the same tape starts right at the first instruction that depends on the input.
+ * A disk entry that is unreadable or written by another format version counts as a miss.
+ */
+public final class ProgramCache {
+    public static final int DEFAULT_CAPACITY = 1 << 20; // instructions kept in memory
+
+    private static final int MAGIC = 0x42465043; // "BFPC"
+    private static final int FORMAT_VERSION = 4;
+    private static final long WINDOW_SIZE = 1L << 30;
+
+    private final int capacity;
+    private final Path directory;
+    private final LinkedHashMap<String, Program> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedInstructions = 0;
+    private long memoryHits = 0;
+    private long diskHits = 0;
+    private long misses = 0;
+
+    public ProgramCache(int capacity) {
+        this(capacity, null);
+    }
+
+    // directory may be null to keep the cache in memory only
+    public ProgramCache(int capacity, Path directory) {
+        this.capacity = capacity;
+        this.directory = directory;
+    }
+
+    // returns the optimized program of a file, loading it through ProgramLoader on a miss
+    public Program load(Path file) throws IOException {
+        return loadSource(file).program;
+    }
+
+    // the same, partially evaluated by evaluator; both forms of the program end up in the cache
+    public Program load(Path file, PartialEvaluator evaluator) throws IOException {
+        if (Files.isRegularFile(file)) {
+            Program program = lookup(hash(file) + "-" + evaluator.key());
+            if (program != null) {
+                return program;
+            }
+        }
+        // a pipe can only be read once, so its evaluated form is looked up after reading it
+        Source source = loadSource(file);
+        String key = source.key + "-" + evaluator.key();
+        Program program = lookup(key);
+        if (program == null) {
+            program = evaluator.evaluate(source.program);
+            store(key, program);
+        }
+        return program;
+    }
+
+    // the optimized program of a file and the hash of the source it was parsed from
+    // on a miss the file is hashed again while it is parsed, from the same blocks, so that a file
+    // that changes in between is cached under the hash of what was parsed
+    private Source loadSource(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            // a pipe can only be read once, so hash and parse the same copy
+            byte[] source = Files.readAllBytes(file);
+            MessageDigest digest = sha256();
+            digest.update(source);
+            String key = hex(digest.digest());
+            Program program = lookup(key);
+            if (program == null) {
+                program = Optimizer.optimize(ProgramLoader.load(ByteBuffer.wrap(source)));
+                store(key, program);
+            }
+            return new Source(key, program);
+        }
+
+        String key = hash(file);
+        Program program = lookup(key);
+        if (program != null) {
+            return new Source(key, program);
+        }
+        MessageDigest digest = sha256();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            program = Optimizer.optimize(ProgramLoader.load(channel, digest));
+        }
+        key = hex(digest.digest());
+        store(key, program);
+        return new Source(key, program);
+    }
+
+    // looks in memory first, then on disk; a disk hit is promoted to the memory tier
+    private Program lookup(String key) {
+        synchronized (this) {
+            Program program = entries.get(key);
+            if (program != null) {
+                memoryHits++;
+                return program;
+            }
+        }
+
+        Program program = directory != null ? readEntry(key) : null;
+        if (program != null) {
+            synchronized (this) {
+                diskHits++;
+            }
+            put(key, program);
+        }
+        return program;
+    }
+
+    private void store(String key, Program program) {
+        synchronized (this) {
+            misses++;
+        }
+        if (directory != null) {
+            writeEntry(key, program);
+        }
+        put(key, program);
+    }
+
+    private synchronized void put(String key, Program program) {
+        Program previous = entries.put(key, program);
+        if (previous != null) {
+            cachedInstructions -= previous.size();
+        }
+        cachedInstructions += program.size();
+
+        // evict least recently used programs, but always keep the one just added
+        Iterator<Map.Entry<String, Program>> eldest = entries.entrySet().iterator();
+        while (cachedInstructions > capacity && entries.size() > 1) {
+            Map.Entry<String, Program> entry = eldest.next();
+            cachedInstructions -= entry.getValue().size();
+            eldest.remove();
+        }
+    }
+
+    private Program readEntry(String key) {
+        Path file = directory.resolve(key + ".bfc");
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            return decode(ByteBuffer.wrap(Files.readAllBytes(file)));
+        } catch (IOException | RuntimeException e) {
+            return null; // corrupt or stale entry, it is rewritten after the miss
+        }
+    }
+
+    private void writeEntry(String key, Program program) {
+        try {
+            Files.createDirectories(directory);
+            // write to a temporary file first, so readers never see a partial entry
+            Path temp = Files.createTempFile(directory, key, ".tmp");
+            Files.write(temp, encode(program));
+            Files.move(temp, directory.resolve(key + ".bfc"), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // the disk tier is only an optimization, the program is still cached in memory
+        }
+    }
+
+    static byte[] encode(Program program) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(program.size() * 3 + 12);
+        writeInt(out, MAGIC);
+        writeInt(out, FORMAT_VERSION);
+        writeVarint(out, program.size());
+        for (int i = 0; i < program.size(); i++) {
+            int opcode = program.opcode(i);
+            out.write(opcode);
+            if (opcode != OpCode.JUMP_IF_ZERO && opcode != OpCode.JUMP_IF_NOT_ZERO) {
+                writeVarint(out, zigzag(program.operand(i)));
+                writeVarint(out, zigzag(program.offset(i)));
+            }
+            if (opcode != OpCode.JUMP_IF_ZERO) {
+                writeVarint(out, program.cost(i));
+            }
+        }
+        writeVarint(out, program.output.length);
+        out.write(program.output, 0, program.output.length);
+        return out.toByteArray();
+    }
+
+    static Program decode(ByteBuffer in) {
+        if (in.getInt() != MAGIC || in.getInt() != FORMAT_VERSION) {
+            throw new RuntimeException("Not a cached program of version " + FORMAT_VERSION);
+        }
+        int length = readLength(in); // every instruction takes at least its opcode byte
+        InstructionBuffer buffer = new InstructionBuffer();
+        int depth = 0;
+
+        for (int i = 0; i < length; i++) {
+            int opcode = in.get();
+            switch (opcode) {
+                case OpCode.JUMP_IF_ZERO:
+                    depth++;
+                    buffer.add(opcode, 0, 0);
+                    break;
+                case OpCode.JUMP_IF_NOT_ZERO:
+                    if (--depth < 0) {
+                        throw new RuntimeException("Unmatched ] in cached program");
+                    }
+                    buffer.add(opcode, 0, 0, readCost(in));
+                    break;
+                case OpCode.ADD:
+                case OpCode.MOVE:
+                case OpCode.OUTPUT:
+                case OpCode.INPUT:
+                case OpCode.CLEAR:
+                case OpCode.MUL_ADD:
+                case OpCode.SCAN:
+                    buffer.add(opcode, unzigzag(readVarint(in)), unzigzag(readVarint(in)), readCost(in));
+                    break;
+                default:
+                    throw new RuntimeException("Invalid opcode " + opcode + " in cached program");
+            }
+        }
+
+        byte[] output = new byte[readLength(in)];
+        in.get(output);
+        if (depth != 0 || in.hasRemaining()) {
+            throw new RuntimeException("Corrupt cached program");
+        }
+        return buffer.toProgram(output);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new RuntimeException("Varint too long in cached program");
+    }
+
+    // a length of something still to come in the entry, checked before anything is allocated for it
+    private static int readLength(ByteBuffer in) {
+        int value = readVarint(in);
+        if (value < 0 || value > in.remaining()) {
+            throw new RuntimeException("Corrupt cached program");
+        }
+        return value;
+    }
+
+    // a negative cost would give a run instructions back
+    private static int readCost(ByteBuffer in) {
+        int value = readVarint(in);
+        if (value < 0) {
+            throw new RuntimeException("Corrupt cached program");
+        }
+        return value;
+    }
+
+    // maps small negative numbers to small positive ones, so -1 takes a single byte
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // hashes the file through the same 1 GB mapped windows as ProgramLoader
+    private static String hash(Path file) throws IOException {
+        MessageDigest digest = sha256();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long start = 0; start < size; start += WINDOW_SIZE) {
+                digest.update(channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, size - start)));
+            }
+        }
+        return hex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String hex(byte[] digest) {
+        StringBuilder hex = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private static final class Source {
+        final String key;
+        final Program program;
+
+        Source(String key, Program program) {
+            this.key = key;
+            this.program = program;
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "program cache: " + memoryHits + " memory hits, " + diskHits + " disk hits, " + misses
+                + " misses, " + entries.size() + " programs (" + cachedInstructions + " instructions) in memory";
+    }
+}
@@ -0,0 +1,191 @@
+package Execution;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/*
+ * Loads a program file by memory-mapping it and parsing the mapped bytes in a single pass.
+ * Comments starting with # run to the end of the line and are skipped together with every byte
+ * that is not a command; commands go straight into an InstructionBuffer, so the source is never
+ * copied into a String. Like MappedInputSource the file is mapped in windows of at most 1 GB.
+ * Lines and columns are counted while scanning, so bracket errors point into the original file.
+ * Runs of + - and > < are folded into one instruction, except by loadCommands.
+ */
+public final class ProgramLoader {
+    private static final long WINDOW_SIZE = 1L << 30;
+    private static final int BLOCK_SIZE = 1 << 20;
+
+    private final InstructionBuffer buffer = new InstructionBuffer();
+    private final boolean folding; // whether runs of + - and > < become one instruction
+    private long[] openPositions = new long[16]; // line << 32 | column of every open [
+    private int depth = 0;
+    private int line = 1;
+    private int column = 0;
+    private boolean inComment = false;
+    private long scanned = 0; // bytes of the windows before the current one
+    private int[] positions; // source offset of every instruction, only kept for the Profiler
+
+    private ProgramLoader(boolean folding) {
+        this.folding = folding;
+    }
+
+    // a loader that also records the source offset of the first byte of every instruction
+    static ProgramLoader recordingPositions() {
+        ProgramLoader loader = new ProgramLoader(true);
+        loader.positions = new int[16];
+        return loader;
+    }
+
+    public static Program load(Path file) throws IOException {
+        return new ProgramLoader(true).read(file);
+    }
+
+    public static Program load(ByteBuffer source) {
+        return new ProgramLoader(true).parse(source);
+    }
+
+    // reads the source from channel in blocks and passes every block to digest before parsing it, so
+    // that the digest is of exactly the bytes that were parsed, as ProgramCache needs for its key
+    static Program load(ReadableByteChannel channel, MessageDigest digest) throws IOException {
+        ProgramLoader loader = new ProgramLoader(true);
+        ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+        while (channel.read(block) >= 0) {
+            if (block.position() == 0) {
+                continue;
+            }
+            block.flip();
+            digest.update(block.array(), 0, block.limit());
+            loader.scan(block);
+            block.clear();
+        }
+        return loader.finish();
+    }
+
+    // loads every command as an instruction of its own, for the ReferenceInterpreter
+    public static Program loadCommands(Path file) throws IOException {
+        return new ProgramLoader(false).read(file);
+    }
+
+    private Program read(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            // pipes and devices such as /dev/stdin cannot be mapped, so they are read into memory
+            return parse(ByteBuffer.wrap(Files.readAllBytes(file)));
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long start = 0; start < size; start += WINDOW_SIZE) {
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.min(WINDOW_SIZE, size - start));
+                scan(window);
+            }
+        }
+        return finish();
+    }
+
+    Program parse(ByteBuffer source) {
+        scan(source);
+        return finish();
+    }
+
+    // positions()[i] is the offset of instruction i in the parsed source
+    int[] positions() {
+        return Arrays.copyOf(positions, buffer.size());
+    }
+
+    private void scan(ByteBuffer window) {
+        int limit = window.limit();
+        for (int i = 0; i < limit; i++) {
+            byte c = window.get(i);
+            column++;
+            int instructions = buffer.size();
+
+            if (c == '\n') {
+                line++;
+                column = 0;
+                inComment = false;
+                continue;
+            }
+            if (inComment) {
+                continue;
+            }
+
+            switch (c) {
+                case '#':
+                    inComment = true;
+                    break;
+                case '+':
+                    addRun(OpCode.ADD, 1);
+                    break;
+                case '-':
+                    addRun(OpCode.ADD, -1);
+                    break;
+                case '>':
+                    addRun(OpCode.MOVE, 1);
+                    break;
+                case '<':
+                    addRun(OpCode.MOVE, -1);
+                    break;
+                case '.':
+                    buffer.addCommand(OpCode.OUTPUT);
+                    break;
+                case ',':
+                    buffer.addCommand(OpCode.INPUT);
+                    break;
+                case '[':
+                    if (depth == openPositions.length) {
+                        openPositions = Arrays.copyOf(openPositions, depth * 2);
+                    }
+                    openPositions[depth++] = (long) line << 32 | column;
+                    buffer.addCommand(OpCode.JUMP_IF_ZERO);
+                    break;
+                case ']':
+                    if (depth == 0) {
+                        throw new RuntimeException("Unmatched ] bracket at line " + line + ", column " + column);
+                    }
+                    depth--;
+                    buffer.addCommand(OpCode.JUMP_IF_NOT_ZERO);
+                    break;
+                default:
+                    break; // not a command
+            }
+
+            if (positions != null && buffer.size() > instructions) {
+                if (instructions == positions.length) {
+                    positions = Arrays.copyOf(positions, instructions * 2);
+                }
+                positions[instructions] = (int) (scanned + i);
+            }
+        }
+        scanned += limit;
+    }
+
+    private void addRun(int opcode, int operand) {
+        if (folding) {
+            buffer.addFolded(opcode, operand);
+        } else {
+            buffer.addCommand(opcode, operand);
+        }
+    }
+
+    private Program finish() {
+        if (depth > 0) {
+            StringBuilder positions = new StringBuilder();
+            for (int i = 0; i < depth; i++) {
+                if (i > 0) positions.append("; ");
+                positions.append("line ").append(openPositions[i] >>> 32)
+                        .append(", column ").append((int) openPositions[i]);
+            }
+            throw new RuntimeException("Unmatched [ bracket at " + positions);
+        }
+        return buffer.toProgram();
+    }
+}
@@ -0,0 +1,82 @@
+package Execution;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/*
+ * Runs a Program as loaded by ProgramLoader.loadCommands or Program.parseCommands, with one
+ * instruction per command of the source: nothing is folded or optimized.
+ * It is the engine to compare the others against, as it has none of their rewrites, and like the
+ * original interpreter it steps through the program one command at a time, on any Tape, input and
+ * output, so <> on the first cell of a BOUNDED tape fails here even though the two cancel out.
+ * Benchmarks.EngineBenchmark measures the other engines against it.
+ */
+public class ReferenceInterpreter implements Engine {
+
+    @Override
+    public String name() {
+        return "reference";
+    }
+
+    @Override
+    public boolean isOptimizing() {
+        return false;
+    }
+
+    @Override
+    public void execute(Program program, Tape tape, InputSource in, OutputSink out, Budget budget) {
+        int[] opcodes = program.opcodes;
+        int[] operands = program.operands;
+        int[] costs = program.costs;
+        int length = program.length;
+        for (int i = 0; i < length; i++) {
+            if ((opcodes[i] == OpCode.ADD || opcodes[i] == OpCode.MOVE) && Math.abs(operands[i]) != 1) {
+                throw new IllegalArgumentException("The reference engine runs one command per instruction, not "
+                        + OpCode.name(opcodes[i]) + " " + operands[i]);
+            }
+        }
+
+        int pointer = 0; // Data Pointer
+        int PC = 0; // Program Counter
+
+        try {
+            program.writeOutput(out);
+            while (PC < length) {
+                switch (opcodes[PC]) {
+                    case OpCode.ADD:
+                        tape.add(pointer, operands[PC]);
+                        break;
+                    case OpCode.MOVE:
+                        pointer = tape.move(pointer, operands[PC]);
+                        break;
+                    case OpCode.OUTPUT:
+                        out.write(tape.get(pointer));
+                        break;
+                    case OpCode.INPUT:
+                        out.beforeInput();
+                        tape.set(pointer, in.read(tape.get(pointer)));
+                        break;
+                    case OpCode.JUMP_IF_ZERO:
+                        if (tape.get(pointer) == 0) {
+                            PC = operands[PC];
+                        }
+                        break;
+                    case OpCode.JUMP_IF_NOT_ZERO:
+                        budget.tick(costs[PC]);
+                        if (tape.get(pointer) != 0) {
+                            PC = operands[PC];
+                        }
+                        break;
+                    default:
+                        throw new IllegalArgumentException("The reference engine runs one command per instruction, not "
+                                + OpCode.name(opcodes[PC]));
+                }
+
+                PC++;
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e.getMessage(), e);
+        }
+    }
+}
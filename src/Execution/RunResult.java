@@ -0,0 +1,46 @@
+package Execution;
+
+// outcome of one run of a ParallelRunner: the output, how long it took, how it ended and the error if it
+// did not complete
+public final class RunResult {
+    private final byte[] output;
+    private final long nanos;
+    private final ExecutionResult.Status status;
+    private final String error;
+
+    RunResult(byte[] output, long nanos, ExecutionResult.Status status, String error) {
+        this.output = output;
+        this.nanos = nanos;
+        this.status = status;
+        this.error = error;
+    }
+
+    // everything the program wrote, also when it failed part way
+    public byte[] getOutput() {
+        return output;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    // a run stopped by one of its ExecutionLimits is not a success either
+    public boolean isSuccess() {
+        return status == ExecutionResult.Status.COMPLETED;
+    }
+
+    public ExecutionResult.Status getStatus() {
+        return status;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return (isSuccess() ? "ok"
+                : status == ExecutionResult.Status.FAILED ? "failed (" + error + ")" : status + " (" + error + ")")
+                + ", " + output.length + " bytes in " + nanos / 1000 + " us";
+    }
+}
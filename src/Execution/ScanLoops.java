@@ -0,0 +1,80 @@
+package Execution;
+
+/*
+ * Runs SCAN instructions, the loops [>], [<], [>>>>] and so on that move the data pointer by a
+ * constant stride until it reaches a zero cell.
+ * On byte array tapes the cells between the pointer and the edge of the tape are searched by
+ * ZeroSearch a block at a time; the single step over the edge then goes through the same wrap or
+ * bounds check as a MOVE, and a WRAPPING tape searches on from the other side. Other tapes take
+ * one step at a time, which still saves the dispatch of three instructions per step.
+ * A Budget is charged the cost of the loop for every step as if it had run, so limits stop a scan that never
+ * finds a zero cell on a wrapping tape just like the loop it replaces; compiled code that is not
+ * metered passes no Budget.
+ */
+final class ScanLoops {
+    private ScanLoops() {
+    }
+
+    // returns the data pointer at the first zero cell from pointer on
+    static int scan(Tape tape, int pointer, int stride, int cost, Budget budget) {
+        if (tape instanceof ArrayTape.Bytes) {
+            return scan(((ArrayTape.Bytes) tape).cells, pointer, stride, cost, tape.mode() == TapeMode.WRAPPING, budget);
+        }
+        while (tape.get(pointer) != 0) {
+            if (budget != null) {
+                budget.tick(cost);
+            }
+            pointer = tape.move(pointer, stride);
+        }
+        return pointer;
+    }
+
+    // the same on the cells of a WRAPPING or BOUNDED byte tape, as called by compiled code
+    static int scan(byte[] cells, int pointer, int stride, int cost, boolean wrapping, Budget budget) {
+        int size = cells.length;
+        while (cells[pointer] != 0) {
+            int stop = stride > 0
+                    ? ZeroSearch.INSTANCE.forward(cells, pointer, stride)
+                    : ZeroSearch.INSTANCE.backward(cells, pointer, stride);
+            if (budget != null) {
+                budget.tick((long) cost * ((stop - pointer) / stride));
+            }
+            pointer = stop;
+
+            if (cells[pointer] != 0) {
+                // the next step leaves the tape
+                if (budget != null) {
+                    budget.tick(cost);
+                }
+                int next = pointer + stride;
+                pointer = wrapping ? ArrayTape.wrap(next, size) : ArrayTape.check(next, size);
+            }
+        }
+        return pointer;
+    }
+
+    // the same on the cells of a short or int tape; these are walked one step at a time
+    static int scan(short[] cells, int pointer, int stride, int cost, boolean wrapping, Budget budget) {
+        int size = cells.length;
+        while (cells[pointer] != 0) {
+            if (budget != null) {
+                budget.tick(cost);
+            }
+            int next = pointer + stride;
+            pointer = wrapping ? ArrayTape.wrap(next, size) : ArrayTape.check(next, size);
+        }
+        return pointer;
+    }
+
+    static int scan(int[] cells, int pointer, int stride, int cost, boolean wrapping, Budget budget) {
+        int size = cells.length;
+        while (cells[pointer] != 0) {
+            if (budget != null) {
+                budget.tick(cost);
+            }
+            int next = pointer + stride;
+            pointer = wrapping ? ArrayTape.wrap(next, size) : ArrayTape.check(next, size);
+        }
+        return pointer;
+    }
+}
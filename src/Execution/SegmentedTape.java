@@ -0,0 +1,199 @@
+package Execution;
+
+import java.util.Arrays;
+
+/*
+ * A tape without edges: cells exist at every int index, negative ones included.
+ * Cells are stored in pages of PAGE_SIZE cells that are only allocated when a cell on them is
+ * written, so a program that jumps far along the tape commits memory only for the pages it
+ * actually uses. Reading a cell on a page that was never written returns 0.
+ * There is one subclass per CellWidth, each with pages of its own primitive array type.
+ */
+public abstract class SegmentedTape implements Tape {
+    static final int PAGE_BITS = 12;
+    static final int PAGE_SIZE = 1 << PAGE_BITS;
+    static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    // pages[i] holds page number (firstPage + i); null until a cell on it is written
+    private Object[] pages = new Object[16];
+    private int firstPage = 0;
+
+    // the last page that was accessed, since programs mostly stay on one page for a while
+    private int cachedPage = 0;
+    private Object cachedCells = null;
+
+    static SegmentedTape create(CellWidth width) {
+        switch (width) {
+            case BYTE:
+                return new Bytes();
+            case SHORT:
+                return new Shorts();
+            default:
+                return new Ints();
+        }
+    }
+
+    @Override
+    public TapeMode mode() {
+        return TapeMode.UNBOUNDED;
+    }
+
+    @Override
+    public int size() {
+        return 0;
+    }
+
+    @Override
+    public int move(int pointer, int delta) {
+        return pointer + delta;
+    }
+
+    // number of pages that have been allocated so far
+    public int allocatedPages() {
+        int count = 0;
+        for (Object page : pages) {
+            if (page != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // the page array itself, not a copy: slot i holds page number firstPage() + i
+    final Object[] pages() {
+        return pages;
+    }
+
+    final int firstPage() {
+        return firstPage;
+    }
+
+    abstract Object newPage();
+
+    // the page holding the cell at index, or null if nothing was written to it yet
+    final Object pageForRead(int index) {
+        int page = index >> PAGE_BITS;
+        if (page == cachedPage && cachedCells != null) {
+            return cachedCells;
+        }
+        int slot = page - firstPage;
+        if (slot < 0 || slot >= pages.length || pages[slot] == null) {
+            return null;
+        }
+        cachedPage = page;
+        cachedCells = pages[slot];
+        return cachedCells;
+    }
+
+    // the page holding the cell at index, allocated if needed
+    final Object pageForWrite(int index) {
+        int page = index >> PAGE_BITS;
+        if (page == cachedPage && cachedCells != null) {
+            return cachedCells;
+        }
+        int slot = page - firstPage;
+        if (slot < 0) {
+            // grow towards lower addresses: move the existing pages up
+            int grow = Math.max(-slot, pages.length);
+            Object[] grown = new Object[pages.length + grow];
+            System.arraycopy(pages, 0, grown, grow, pages.length);
+            pages = grown;
+            firstPage -= grow;
+            slot += grow;
+        } else if (slot >= pages.length) {
+            pages = Arrays.copyOf(pages, Math.max(slot + 1, pages.length * 2));
+        }
+        if (pages[slot] == null) {
+            pages[slot] = newPage();
+        }
+        cachedPage = page;
+        cachedCells = pages[slot];
+        return cachedCells;
+    }
+
+    static final class Bytes extends SegmentedTape {
+        @Override
+        public CellWidth width() {
+            return CellWidth.BYTE;
+        }
+
+        @Override
+        Object newPage() {
+            return new byte[PAGE_SIZE];
+        }
+
+        @Override
+        public int get(int index) {
+            byte[] page = (byte[]) pageForRead(index);
+            return page == null ? 0 : page[index & PAGE_MASK];
+        }
+
+        @Override
+        public void set(int index, int value) {
+            ((byte[]) pageForWrite(index))[index & PAGE_MASK] = (byte) value;
+        }
+
+        @Override
+        public void add(int index, int delta) {
+            byte[] cells = (byte[]) pageForWrite(index);
+            cells[index & PAGE_MASK] = (byte) (cells[index & PAGE_MASK] + delta);
+        }
+    }
+
+    static final class Shorts extends SegmentedTape {
+        @Override
+        public CellWidth width() {
+            return CellWidth.SHORT;
+        }
+
+        @Override
+        Object newPage() {
+            return new short[PAGE_SIZE];
+        }
+
+        @Override
+        public int get(int index) {
+            short[] page = (short[]) pageForRead(index);
+            return page == null ? 0 : page[index & PAGE_MASK];
+        }
+
+        @Override
+        public void set(int index, int value) {
+            ((short[]) pageForWrite(index))[index & PAGE_MASK] = (short) value;
+        }
+
+        @Override
+        public void add(int index, int delta) {
+            short[] cells = (short[]) pageForWrite(index);
+            cells[index & PAGE_MASK] = (short) (cells[index & PAGE_MASK] + delta);
+        }
+    }
+
+    static final class Ints extends SegmentedTape {
+        @Override
+        public CellWidth width() {
+            return CellWidth.INT;
+        }
+
+        @Override
+        Object newPage() {
+            return new int[PAGE_SIZE];
+        }
+
+        @Override
+        public int get(int index) {
+            int[] page = (int[]) pageForRead(index);
+            return page == null ? 0 : page[index & PAGE_MASK];
+        }
+
+        @Override
+        public void set(int index, int value) {
+            ((int[]) pageForWrite(index))[index & PAGE_MASK] = value;
+        }
+
+        @Override
+        public void add(int index, int delta) {
+            ((int[]) pageForWrite(index))[index & PAGE_MASK] += delta;
+        }
+    }
+}
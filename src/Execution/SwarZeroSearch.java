@@ -0,0 +1,36 @@
+package Execution;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/*
+ * ZeroSearch in plain Java: eight bytes are read as one little-endian long and tested for zero
+ * bytes all at once ("SIMD within a register"). The flag of byte j is bit 8 * j + 7.
+ */
+final class SwarZeroSearch extends ZeroSearch {
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+
+    SwarZeroSearch() {
+        super(8, 8);
+    }
+
+    @Override
+    long zeroFlags(byte[] cells, int base) {
+        long word = (long) LONGS.get(cells, base);
+        // the top bit of a byte ends up set only if none of its bits was set; unlike the shorter
+        // (word - 0x01..) & ~word trick this never flags a byte next to a zero byte
+        long low = (word & LOW_BITS) + LOW_BITS;
+        return ~(low | word | LOW_BITS);
+    }
+
+    @Override
+    long stridePattern(int stride) {
+        long pattern = 0;
+        for (int lane = 0; lane < 8; lane += stride) {
+            pattern |= 1L << (8 * lane + 7);
+        }
+        return pattern;
+    }
+}
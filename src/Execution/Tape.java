@@ -0,0 +1,32 @@
+package Execution;
+
+/*
+ * The memory of a running program: a row of cells addressed by int indexes.
+ * Engines keep the data pointer themselves and go through the tape for every cell access, so what
+ * happens at the edges of the tape is decided by the implementation alone, see TapeMode.
+ * Every implementation stores one CellWidth in its own primitive array type. Values passed to set
+ * and add are truncated to that width and get returns the signed cell value, so an engine never has
+ * to look at the width itself.
+ * The interpreters are therefore written once for all widths and are not specialized per width:
+ * their calls to the tape are only inlined while the process runs one or two Tape classes, and go
+ * through the interface once tapes of more widths or storages have run. The only code specialized
+ * per width comes from BytecodeCompiler, which indexes the byte[], short[] or int[] of an ArrayTape
+ * directly.
+ */
+public interface Tape {
+    TapeMode mode();
+
+    CellWidth width();
+
+    // the number of cells of a WRAPPING or BOUNDED tape; 0 for an UNBOUNDED one, which has no edges
+    int size();
+
+    int get(int index);
+
+    void set(int index, int value);
+
+    void add(int index, int delta);
+
+    // returns the data pointer after moving it by delta cells from pointer
+    int move(int pointer, int delta);
+}
@@ -0,0 +1,19 @@
+package Execution;
+
+// how a Tape treats the data pointer at its edges
+public enum TapeMode {
+    WRAPPING,  // fixed size, moving past either edge wraps around like the original interpreter
+    BOUNDED,   // fixed size, moving or reaching past either edge is an error
+    UNBOUNDED; // grows in both directions, allocating pages only where cells are written
+
+    public Tape newTape(int size) {
+        return newTape(size, CellWidth.BYTE);
+    }
+
+    public Tape newTape(int size, CellWidth width) {
+        if (this == UNBOUNDED) {
+            return SegmentedTape.create(width);
+        }
+        return ArrayTape.create(this, size, width);
+    }
+}
@@ -0,0 +1,15 @@
+package Execution;
+
+// where the cells of a fixed-size tape are kept
+public enum TapeStorage {
+    HEAP,     // a primitive array on the Java heap, see ArrayTape
+    OFF_HEAP; // a MemorySegment outside of the heap, see MemoryTape
+
+    // an UNBOUNDED tape always grows on the heap, see SegmentedTape
+    public Tape newTape(TapeMode mode, int size, CellWidth width) {
+        if (this == OFF_HEAP) {
+            return MemoryTape.allocate(mode, size, width);
+        }
+        return mode.newTape(size, width);
+    }
+}
@@ -0,0 +1,142 @@
+package Execution;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/*
+ * Runs a Program in the IR interpreter and compiles only the loops that turn out to be hot.
+ * Every taken back-edge counts an iteration for its loop. Once a loop reaches the threshold, the
+ * whole loop is compiled by BytecodeCompiler and run as compiled code from then on; when the
+ * compiled loop exits, execution continues in the interpreter after its ]. Short programs never pay
+ * for compilation, long-running ones spend their time in compiled inner loops.
+ * Runs that are given the CompiledLoops of earlier runs of the same program start with those loops
+ * compiled; ExecutionServer keeps them per program.
+ * Semantics match IrInterpreter.
+ */
+public class TieredInterpreter implements Engine {
+    public static final int DEFAULT_THRESHOLD = 1000;
+
+    private final int threshold;
+    private final TieringListener listener;
+
+    public TieredInterpreter(int threshold, TieringListener listener) {
+        this.threshold = threshold;
+        this.listener = listener;
+    }
+
+    @Override
+    public String name() {
+        return "tiered";
+    }
+
+    public void execute(Program program, Tape tape, InputSource in, OutputSink out) {
+        execute(program, tape, in, out, Budget.unlimited());
+    }
+
+    // charges budget for every loop iteration; hot loops are then compiled with the same checks
+    @Override
+    public void execute(Program program, Tape tape, InputSource in, OutputSink out, Budget budget) {
+        execute(program, new CompiledLoops(program), tape, in, out, budget);
+    }
+
+    // the same, starting with the loops that earlier runs of program left in loops and adding the
+    // ones this run compiles
+    public void execute(Program program, CompiledLoops loops, Tape tape, InputSource in, OutputSink out,
+                        Budget budget) {
+        int[] opcodes = program.opcodes;
+        int[] operands = program.operands;
+        int[] offsets = program.offsets;
+        int[] costs = program.costs;
+        int bits = tape.width().bits();
+        int length = program.length;
+
+        // both indexed by the position of the loop's [
+        int[] iterations = new int[length];
+        CompiledProgram[] compiledLoops = loops.usable(program, tape, budget.limited);
+
+        int pointer = 0; // Data Pointer
+        int PC = 0; // Program Counter
+
+        try {
+            program.writeOutput(out);
+            while (PC < length) {
+                switch (opcodes[PC]) {
+                    case OpCode.ADD:
+                        tape.add(pointer + offsets[PC], operands[PC]);
+                        break;
+                    case OpCode.MOVE:
+                        pointer = tape.move(pointer, operands[PC]);
+                        break;
+                    case OpCode.OUTPUT:
+                        out.write(tape.get(pointer + offsets[PC]));
+                        break;
+                    case OpCode.INPUT:
+                        out.beforeInput();
+                        int target = pointer + offsets[PC];
+                        tape.set(target, in.read(tape.get(target)));
+                        break;
+                    case OpCode.CLEAR:
+                        budget.tickClear(tape.get(pointer + offsets[PC]), operands[PC], costs[PC], bits);
+                        tape.set(pointer + offsets[PC], 0);
+                        break;
+                    case OpCode.MUL_ADD:
+                        // the loop the MUL_ADD came from would not have run on a zero cell, nor touched its neighbours
+                        int factor = tape.get(pointer);
+                        if (factor != 0) {
+                            tape.add(pointer + offsets[PC], factor * operands[PC]);
+                        }
+                        break;
+                    case OpCode.SCAN:
+                        pointer = ScanLoops.scan(tape, pointer, operands[PC], costs[PC], budget);
+                        break;
+                    case OpCode.JUMP_IF_ZERO:
+                        if (compiledLoops[PC] != null) {
+                            pointer = compiledLoops[PC].run(tape, pointer, in, out, budget);
+                            PC = operands[PC];
+                        } else if (tape.get(pointer) == 0) {
+                            PC = operands[PC];
+                        }
+                        break;
+                    case OpCode.JUMP_IF_NOT_ZERO:
+                        budget.tick(costs[PC]);
+                        if (tape.get(pointer) != 0) {
+                            int start = operands[PC];
+                            if (++iterations[start] == threshold) {
+                                compiledLoops[start] = compileLoop(program, tape, start, PC, iterations[start],
+                                        budget.limited);
+                                if (compiledLoops[start] != null) {
+                                    loops.put(start, compiledLoops[start]);
+                                }
+                            }
+                            if (compiledLoops[start] != null) {
+                                // the loop cell is nonzero, so the compiled loop picks up with its next iteration
+                                pointer = compiledLoops[start].run(tape, pointer, in, out, budget);
+                            } else {
+                                PC = start;
+                            }
+                        }
+                        break;
+                }
+
+                PC++;
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e.getMessage(), e);
+        }
+    }
+
+    private CompiledProgram compileLoop(Program program, Tape tape, int start, int end, int iterations,
+                                        boolean metered) {
+        long begin = System.nanoTime();
+        try {
+            CompiledProgram loop = BytecodeCompiler.compile(program, tape.mode(), tape.width(), metered,
+                    tape instanceof ArrayTape, start, end + 1);
+            listener.loopCompiled(start, end, iterations, System.nanoTime() - begin);
+            return loop;
+        } catch (RuntimeException e) {
+            listener.loopNotCompiled(start, end, iterations, e.getMessage());
+            return null;
+        }
+    }
+}
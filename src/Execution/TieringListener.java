@@ -0,0 +1,39 @@
+package Execution;
+
+import java.io.PrintStream;
+
+// receives the loop hotness and compile decisions of a TieredInterpreter
+// loops are identified by the instruction indexes of their [ and ]
+public interface TieringListener {
+    TieringListener NONE = new TieringListener() {
+        @Override
+        public void loopCompiled(int start, int end, int iterations, long compileNanos) {
+        }
+
+        @Override
+        public void loopNotCompiled(int start, int end, int iterations, String reason) {
+        }
+    };
+
+    // the loop passed the threshold after this many interpreted iterations and now runs compiled code
+    void loopCompiled(int start, int end, int iterations, long compileNanos);
+
+    // the loop passed the threshold but could not be compiled; it stays interpreted
+    void loopNotCompiled(int start, int end, int iterations, String reason);
+
+    static TieringListener log(PrintStream log) {
+        return new TieringListener() {
+            @Override
+            public void loopCompiled(int start, int end, int iterations, long compileNanos) {
+                log.println("[tiering] compiled loop " + start + ".." + end + " after " + iterations
+                        + " iterations in " + compileNanos / 1000 + " us");
+            }
+
+            @Override
+            public void loopNotCompiled(int start, int end, int iterations, String reason) {
+                log.println("[tiering] loop " + start + ".." + end + " stays interpreted after "
+                        + iterations + " iterations: " + reason);
+            }
+        };
+    }
+}
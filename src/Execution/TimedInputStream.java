@@ -0,0 +1,111 @@
+package Execution;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Bounds how long a run can wait for its input, for input that comes from a pipe or a socket.
+ * Every read arms a timer for the shorter of the idle timeout and the time the Budget has left. When
+ * the timer goes off before the read returns it calls cancel, which has to make the blocked read
+ * return or fail, e.g. by interrupting the reading thread while it reads an InterruptibleChannel or
+ * by shutting down the input of a socket. The read then stops the run with TIME_LIMIT if the
+ * Budget's time is up, and fails with an IOException if the input was idle for too long.
+ * Reads are timed in the blocks the InputSource above asks for, so the timer costs nothing per byte.
+ */
+public final class TimedInputStream extends InputStream {
+    private static final ScheduledThreadPoolExecutor TIMER = new ScheduledThreadPoolExecutor(1, task -> {
+        Thread thread = new Thread(task, "input-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        TIMER.setRemoveOnCancelPolicy(true);
+    }
+
+    private final InputStream in;
+    private long idleMillis; // 0 for no idle timeout
+    private Budget budget;
+    private final Runnable cancel;
+    private boolean reading = false; // guarded by this, like cancelled
+    private boolean cancelled = false;
+
+    public TimedInputStream(InputStream in, long idleMillis, Budget budget, Runnable cancel) {
+        this.in = in;
+        this.idleMillis = idleMillis;
+        this.budget = budget;
+        this.cancel = cancel;
+    }
+
+    // times the reads from now on with another idle timeout and the time left to another run
+    public void time(long idleMillis, Budget budget) {
+        this.idleMillis = idleMillis;
+        this.budget = budget;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) == 1 ? b[0] & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        budget.checkTime();
+        long timeout = Math.min(idleMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(idleMillis) : Long.MAX_VALUE,
+                budget.nanosLeft());
+        if (timeout == Long.MAX_VALUE) {
+            return in.read(b, off, len);
+        }
+
+        synchronized (this) {
+            reading = true;
+        }
+        ScheduledFuture<?> timer = TIMER.schedule(this::expire, timeout, TimeUnit.NANOSECONDS);
+        int n;
+        try {
+            n = in.read(b, off, len);
+        } catch (IOException e) {
+            if (finish(timer)) {
+                throw timedOut();
+            }
+            throw e;
+        }
+        if (finish(timer)) {
+            throw timedOut();
+        }
+        return n;
+    }
+
+    private synchronized void expire() {
+        if (reading) {
+            cancelled = true;
+            cancel.run();
+        }
+    }
+
+    // ends a read and returns whether the timer cancelled it
+    private boolean finish(ScheduledFuture<?> timer) {
+        timer.cancel(false);
+        synchronized (this) {
+            reading = false;
+            if (cancelled) {
+                Thread.interrupted(); // in case cancel interrupted this thread
+            }
+            return cancelled;
+        }
+    }
+
+    private IOException timedOut() {
+        budget.checkTime();
+        return new IOException("no input for " + idleMillis + " ms");
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
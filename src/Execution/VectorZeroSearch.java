@@ -0,0 +1,35 @@
+package Execution;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/*
+ * ZeroSearch on the widest byte vectors of the CPU, through the incubating Vector API.
+ * The flag of byte j is bit j of the compare mask. Vectors are capped at 512 bits, as the mask of a
+ * wider one, e.g. on ARM SVE, does not fit the long of flags. This class is only loaded by name, so
+ * the rest of the engine runs without jdk.incubator.vector.
+ */
+final class VectorZeroSearch extends ZeroSearch {
+    private static final VectorSpecies<Byte> SPECIES = VectorSpecies.of(byte.class,
+            VectorShape.forBitSize(Math.min(ByteVector.SPECIES_PREFERRED.vectorBitSize(), Long.SIZE * 8)));
+
+    VectorZeroSearch() {
+        super(SPECIES.length(), 1);
+    }
+
+    @Override
+    long zeroFlags(byte[] cells, int base) {
+        return ByteVector.fromArray(SPECIES, cells, base).compare(VectorOperators.EQ, (byte) 0).toLong();
+    }
+
+    @Override
+    long stridePattern(int stride) {
+        long pattern = 0;
+        for (int lane = 0; lane < SPECIES.length(); lane += stride) {
+            pattern |= 1L << lane;
+        }
+        return pattern;
+    }
+}
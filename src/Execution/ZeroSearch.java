@@ -0,0 +1,117 @@
+package Execution;
+
+/*
+ * Finds the first zero byte along a strided path through a byte array, for ScanLoops.
+ * Implementations compare a whole block of bytes with zero at once and return a word of flags with
+ * one group of bitsPerLane bits per byte; the block size is lanes bytes. A stride other than 1
+ * only keeps the flags of the bytes on the path, through a mask with one lane set every stride
+ * lanes that is shifted to where the path enters the block. Strides of a block or more gain
+ * nothing from this and are walked one byte at a time.
+ * VectorZeroSearch uses jdk.incubator.vector when the JVM was started with
+ * --add-modules jdk.incubator.vector; otherwise SwarZeroSearch compares 8 bytes in a long.
+ */
+abstract class ZeroSearch {
+    static final ZeroSearch INSTANCE = load();
+
+    // scan loops mostly stop after a few steps, which are cheaper to take one at a time
+    private static final int SCALAR_STEPS = 8;
+
+    private final int lanes;
+    private final int bitsPerLane;
+
+    ZeroSearch(int lanes, int bitsPerLane) {
+        this.lanes = lanes;
+        this.bitsPerLane = bitsPerLane;
+    }
+
+    private static ZeroSearch load() {
+        try {
+            return (ZeroSearch) Class.forName("Execution.VectorZeroSearch").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // jdk.incubator.vector is not in the module graph
+            return new SwarZeroSearch();
+        }
+    }
+
+    // flags of the zero bytes in cells[base .. base + lanes), the lowest bits for the lowest index
+    abstract long zeroFlags(byte[] cells, int base);
+
+    // a mask with the flag of every stride-th lane set, starting at lane 0
+    abstract long stridePattern(int stride);
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " of " + lanes + " bytes";
+    }
+
+    // the index of the first zero of cells[from], cells[from + stride], ... for stride > 0, or the
+    // last of these indexes inside the array if none of them is zero
+    final int forward(byte[] cells, int from, int stride) {
+        int length = cells.length;
+        int i = from;
+        for (int step = 0; step < SCALAR_STEPS; step++) {
+            if (cells[i] == 0 || length - i <= stride) {
+                return i;
+            }
+            i += stride;
+        }
+
+        if (stride < lanes) {
+            long pattern = stridePattern(stride);
+            int base = i;
+            while (base <= length - lanes) {
+                // the path enters this block at the lowest lane congruent to i
+                long zeros = zeroFlags(cells, base) & pattern << bitsPerLane * Math.floorMod(i - base, stride);
+                if (zeros != 0) {
+                    return base + Long.numberOfTrailingZeros(zeros) / bitsPerLane;
+                }
+                base += lanes;
+            }
+            int next = base + Math.floorMod(i - base, stride);
+            if (next >= length) {
+                return next - stride;
+            }
+            i = next;
+        }
+
+        while (cells[i] != 0 && length - i > stride) {
+            i += stride;
+        }
+        return i;
+    }
+
+    // the same going down for stride < 0: the first zero, or the last index not below 0
+    final int backward(byte[] cells, int from, int stride) {
+        int distance = -stride;
+        int i = from;
+        for (int step = 0; step < SCALAR_STEPS; step++) {
+            if (cells[i] == 0 || i < distance) {
+                return i;
+            }
+            i -= distance;
+        }
+
+        if (distance < lanes) {
+            long pattern = stridePattern(distance);
+            int base = i - lanes + 1;
+            while (base >= 0) {
+                long zeros = zeroFlags(cells, base) & pattern << bitsPerLane * Math.floorMod(i - base, distance);
+                if (zeros != 0) {
+                    return base + (63 - Long.numberOfLeadingZeros(zeros)) / bitsPerLane;
+                }
+                base -= lanes;
+            }
+            int top = base + lanes - 1;
+            int next = top - Math.floorMod(top - i, distance);
+            if (next < 0) {
+                return next + distance;
+            }
+            i = next;
+        }
+
+        while (cells[i] != 0 && i >= distance) {
+            i -= distance;
+        }
+        return i;
+    }
+}
@@ -1,7 +1,56 @@
-import java.io.BufferedReader;
-import java.io.FileReader;
+import Execution.BatchResult;
+import Execution.BatchRunner;
+import Execution.BufferedInputSource;
+import Execution.BufferedOutputSink;
+import Execution.Budget;
+import Execution.CellWidth;
+import Execution.Checkpoint;
+import Execution.Checkpointer;
+import Execution.Engine;
+import Execution.EngineSelector;
+import Execution.EofPolicy;
+import Execution.ExecutionLimits;
+import Execution.ExecutionResult;
+import Execution.ExecutionServer;
+import Execution.FlushPolicy;
+import Execution.InputSource;
+import Execution.IrInterpreter;
+import Execution.LimitExceededException;
+import Execution.LoopMemo;
+import Execution.MappedInputSource;
+import Execution.MemoryTape;
+import Execution.MemoizingInterpreter;
+import Execution.OutputSink;
+import Execution.ParallelRunner;
+import Execution.PartialEvaluator;
+import Execution.Profile;
+import Execution.Profiler;
+import Execution.Program;
+import Execution.ProgramCache;
+import Execution.ProgramLoader;
+import Execution.RunResult;
+import Execution.Tape;
+import Execution.TapeMode;
+import Execution.TapeStorage;
+import Execution.TieredInterpreter;
+import Execution.TieringListener;
+import Execution.TimedInputStream;
+
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
 
 /*
     * A simple interpreter for a Brainfuck-like esoteric programming language.
@@ -21,132 +70,485 @@ import java.io.InputStreamReader;
     * The interpreter uses an array of 30,000 bytes initialized to zero as memory.
     * The data pointer starts at the beginning of this array.
     * The program to be interpreted is read from a .txt file.
+    * Interpreter --help lists the options for engines, tapes, I/O, limits, batches and the server.
  */
 
 public class Interpreter {
     private static final int MEMORY_SIZE = 30000;
-    private static final int EOF = -1;
+    private static final int EXIT_FAILED = 1; // the run failed, or a run of a batch or of --inputs did not complete
+    private static final int EXIT_LIMIT = 2; // a run was stopped by one of its limits
+
+    private static final String[] USAGE = {
+        "Usage: Interpreter [options] [program file]",
+        "Runs a Brainfuck program, src/BrainFuckPrograms/Testing.bf if none is given.",
+        "",
+        "Engines (picked from the size and loops of the program unless forced):",
+        "  --engine=auto|reference|ir|compiled|tiered|memoized",
+        "  --reference, --compiled, --tiered, --memoize   short forms of --engine",
+        "  --tier-threshold=N      loop iterations before the tiered engine compiles a loop",
+        "  --memo-capacity=CELLS   cells the memoized engine remembers",
+        "  --verbose               print the engine chosen, cache and memo statistics and run results",
+        "",
+        "Tape:",
+        "  --tape=wrapping|bounded|unbounded   what moving past an edge does (default wrapping)",
+        "  --tape-size=N           cells of a fixed tape (default 30000, at most 2147483647)",
+        "  --cell-bits=8|16|32     width of a cell (default 8)",
+        "  --tape-storage=heap|off-heap        where the cells of a fixed tape are kept",
+        "  --tape-file=FILE        keep the cells in a memory-mapped FILE, which holds the final tape",
+        "",
+        "Input and output:",
+        "  --input=FILE            read input from FILE instead of stdin",
+        "  --mmap-input=FILE       memory-map the input FILE",
+        "  --eof=zero|minus_one|unchanged      what , stores once the input is exhausted",
+        "  --output=FILE           write output to FILE instead of stdout",
+        "  --flush=line|input|size|exit        when buffered output is written",
+        "",
+        "Program:",
+        "  --cache-dir=DIR         keep parsed and optimized programs on disk",
+        "  --precompute[=N]        run the program up to its first , ahead of time, for at most N instructions",
+        "  --profile=FILE          print a heat map of the program and write its loop counts as JSON to FILE",
+        "",
+        "Limits (a run that reaches one is stopped and the interpreter exits with status 2):",
+        "  --max-instructions=N  --max-time=MS  --max-output=BYTES",
+        "",
+        "Checkpoints (IR engine):",
+        "  --checkpoint=FILE       save the state of the run to FILE on SIGUSR2",
+        "  --checkpoint-every=SECONDS          and periodically",
+        "  --resume=FILE           continue the run saved in FILE",
+        "",
+        "Many runs (exit with status 1 if any run does not complete):",
+        "  --batch=DIR|MANIFEST    run many programs in parallel, one result line each",
+        "  --inputs=DIR            run the program against every file in DIR",
+        "  --batch-threads=N       platform threads to run on instead of virtual threads",
+        "  --batch-output=DIR      save the output of every run in DIR",
+        "",
+        "Server:",
+        "  --serve=unix:PATH|PORT  serve RUN requests on a Unix domain socket or a loopback TCP port,",
+        "                          e.g. { echo \"RUN $PWD/program.bf max-time=1000\"; cat input; } | nc -N -U PATH",
+        "  --server-runs=N         programs run at a time (default one per processor)",
+        "  --server-queue=N        requests that may wait for a run (default 64)",
+        "",
+        "Exits with status 1 when the program or one of the options is invalid or the run fails.",
+    };
 
     public static void main(String[] args) {
         try {
-            // specify the .txt file with the program
-            String program = convertFileToProgram2("src/BrainFuckPrograms/Testing.bf");
+            interpret(args);
+        } catch (RuntimeException e) {
+            // e.g. a program that leaves a BOUNDED tape, or a bracket that does not match
+            System.err.println("Error: " + (e.getMessage() != null ? e.getMessage() : e.toString()));
+            System.exit(EXIT_FAILED);
+        }
+    }
+
+    private static void interpret(String[] args) {
+        // specify the .txt file with the program
+        String filename = "src/BrainFuckPrograms/Testing.bf";
+        String engine = "auto";
+        int tierThreshold = TieredInterpreter.DEFAULT_THRESHOLD;
+        int memoCapacity = LoopMemo.DEFAULT_CAPACITY;
+        TapeMode tapeMode = TapeMode.WRAPPING;
+        int tapeSize = MEMORY_SIZE;
+        CellWidth cellWidth = CellWidth.BYTE;
+        TapeStorage tapeStorage = TapeStorage.HEAP;
+        String tapeFile = null;
+        boolean verbose = false;
+        String inputFile = null;
+        boolean mapInput = false;
+        EofPolicy eofPolicy = EofPolicy.ZERO;
+        String outputFile = null;
+        String batch = null;
+        String inputs = null;
+        String serve = null;
+        int serverRuns = Runtime.getRuntime().availableProcessors();
+        int serverQueue = 64;
+        String batchOutput = null;
+        int batchThreads = 0;
+        String cacheDir = null;
+        long precompute = 0;
+        String profileFile = null;
+        long maxInstructions = 0;
+        long maxMillis = 0;
+        long maxOutput = 0;
+        String checkpointFile = null;
+        long checkpointEvery = 0;
+        String resumeFile = null;
+        // flush on newlines when someone is watching, otherwise in blocks
+        FlushPolicy flushPolicy = System.console() != null ? FlushPolicy.LINE : FlushPolicy.SIZE;
+
+        for (String arg : args) {
+            try {
+                if (arg.equals("--reference") || arg.equals("--compiled") || arg.equals("--tiered")) {
+                    engine = arg.substring(2);
+                } else if (arg.equals("--memoize")) {
+                    engine = "memoized";
+                } else if (arg.startsWith("--memo-capacity=")) {
+                    memoCapacity = Integer.parseInt(arg.substring("--memo-capacity=".length()));
+                } else if (arg.startsWith("--engine=")) {
+                    engine = arg.substring("--engine=".length());
+                } else if (arg.startsWith("--tier-threshold=")) {
+                    tierThreshold = Integer.parseInt(arg.substring("--tier-threshold=".length()));
+                } else if (arg.startsWith("--flush=")) {
+                    flushPolicy = FlushPolicy.valueOf(arg.substring("--flush=".length()).toUpperCase());
+                } else if (arg.startsWith("--tape=")) {
+                    tapeMode = TapeMode.valueOf(arg.substring("--tape=".length()).toUpperCase());
+                } else if (arg.startsWith("--tape-size=")) {
+                    long size = Long.parseLong(arg.substring("--tape-size=".length()));
+                    if (size < 1 || size > Integer.MAX_VALUE) {
+                        System.err.println("--tape-size must be between 1 and " + Integer.MAX_VALUE
+                                + " cells, as tapes address their cells by int");
+                        System.exit(EXIT_FAILED);
+                    }
+                    tapeSize = (int) size;
+                } else if (arg.startsWith("--cell-bits=")) {
+                    cellWidth = CellWidth.ofBits(Integer.parseInt(arg.substring("--cell-bits=".length())));
+                } else if (arg.startsWith("--tape-storage=")) {
+                    String storage = arg.substring("--tape-storage=".length());
+                    tapeStorage = TapeStorage.valueOf(storage.toUpperCase().replace('-', '_'));
+                } else if (arg.startsWith("--tape-file=")) {
+                    tapeFile = arg.substring("--tape-file=".length());
+                } else if (arg.startsWith("--input=")) {
+                    inputFile = arg.substring("--input=".length());
+                    mapInput = false;
+                } else if (arg.startsWith("--mmap-input=")) {
+                    inputFile = arg.substring("--mmap-input=".length());
+                    mapInput = true;
+                } else if (arg.startsWith("--eof=")) {
+                    eofPolicy = EofPolicy.valueOf(arg.substring("--eof=".length()).toUpperCase());
+                } else if (arg.startsWith("--output=")) {
+                    outputFile = arg.substring("--output=".length());
+                } else if (arg.startsWith("--batch=")) {
+                    batch = arg.substring("--batch=".length());
+                } else if (arg.startsWith("--serve=")) {
+                    serve = arg.substring("--serve=".length());
+                } else if (arg.startsWith("--server-runs=")) {
+                    serverRuns = Integer.parseInt(arg.substring("--server-runs=".length()));
+                } else if (arg.startsWith("--server-queue=")) {
+                    serverQueue = Integer.parseInt(arg.substring("--server-queue=".length()));
+                } else if (arg.startsWith("--inputs=")) {
+                    inputs = arg.substring("--inputs=".length());
+                } else if (arg.startsWith("--batch-threads=")) {
+                    batchThreads = Integer.parseInt(arg.substring("--batch-threads=".length()));
+                } else if (arg.startsWith("--batch-output=")) {
+                    batchOutput = arg.substring("--batch-output=".length());
+                } else if (arg.startsWith("--cache-dir=")) {
+                    cacheDir = arg.substring("--cache-dir=".length());
+                } else if (arg.equals("--precompute")) {
+                    precompute = PartialEvaluator.DEFAULT_BUDGET;
+                } else if (arg.startsWith("--precompute=")) {
+                    precompute = Long.parseLong(arg.substring("--precompute=".length()));
+                } else if (arg.startsWith("--profile=")) {
+                    profileFile = arg.substring("--profile=".length());
+                } else if (arg.startsWith("--max-instructions=")) {
+                    maxInstructions = Long.parseLong(arg.substring("--max-instructions=".length()));
+                } else if (arg.startsWith("--max-time=")) {
+                    maxMillis = Long.parseLong(arg.substring("--max-time=".length()));
+                } else if (arg.startsWith("--max-output=")) {
+                    maxOutput = Long.parseLong(arg.substring("--max-output=".length()));
+                } else if (arg.startsWith("--checkpoint=")) {
+                    checkpointFile = arg.substring("--checkpoint=".length());
+                } else if (arg.startsWith("--checkpoint-every=")) {
+                    checkpointEvery = Long.parseLong(arg.substring("--checkpoint-every=".length()));
+                } else if (arg.startsWith("--resume=")) {
+                    resumeFile = arg.substring("--resume=".length());
+                } else if (arg.equals("--verbose")) {
+                    verbose = true;
+                } else if (arg.equals("--help")) {
+                    for (String line : USAGE) {
+                        System.out.println(line);
+                    }
+                    return;
+                } else if (arg.startsWith("--")) {
+                    System.err.println("Unknown option: " + arg + " (see --help)");
+                    System.exit(EXIT_FAILED);
+                } else {
+                    filename = arg;
+                }
+            } catch (IllegalArgumentException e) {
+                // a number or a name that does not parse
+                System.err.println("Invalid option " + arg + ": " + e.getMessage());
+                System.exit(EXIT_FAILED);
+            }
+        }
+
+        ExecutionLimits limits = new ExecutionLimits(maxInstructions, maxMillis, maxOutput);
+        ProgramCache cache = new ProgramCache(ProgramCache.DEFAULT_CAPACITY, cacheDir != null ? Paths.get(cacheDir) : null);
+        PartialEvaluator evaluator = precompute > 0 && !limits.isLimited()
+                ? new PartialEvaluator(tapeMode, tapeSize, cellWidth, precompute)
+                : null;
 
-            execute(program);
+        if (batch != null) {
+            BatchRunner runner = new BatchRunner(engine, tapeMode, tapeSize, cellWidth, tapeStorage, eofPolicy,
+                    batchThreads, cache, limits, evaluator);
+            boolean completed = runBatch(runner, Paths.get(batch), batchOutput);
+            if (verbose) {
+                System.err.println(cache);
+            }
+            if (!completed) {
+                System.exit(EXIT_FAILED);
+            }
+            return;
+        }
+        if (serve != null) {
+            // the evaluator is created for unlimited runs here, as requests can bring limits of their own
+            ExecutionServer server = new ExecutionServer(cache, tapeMode, tapeSize, cellWidth, eofPolicy, limits,
+                    precompute > 0 ? new PartialEvaluator(tapeMode, tapeSize, cellWidth, precompute) : null, engine,
+                    serverRuns, serverQueue, verbose ? System.err : null);
+            try {
+                server.serve(ExecutionServer.address(serve));
+            } catch (IOException e) {
+                System.err.println("Server error: " + e.getMessage());
+                System.exit(EXIT_FAILED);
+            }
+            return;
+        }
+        if (inputs != null) {
+            if (!runInputs(filename, Paths.get(inputs), batchOutput, batchThreads, tapeMode, tapeSize, cellWidth,
+                    eofPolicy, limits, cache, evaluator, verbose)) {
+                System.exit(EXIT_FAILED);
+            }
+            return;
+        }
+
+        if (checkpointFile != null || resumeFile != null) {
+            if ((!engine.equals("auto") && !engine.equals("ir")) || profileFile != null) {
+                System.err.println("--checkpoint and --resume only work with the IR engine");
+                System.exit(EXIT_FAILED);
+            }
+            engine = "ir";
+        }
+        if ((checkpointFile != null || resumeFile != null) && (tapeStorage != TapeStorage.HEAP || tapeFile != null)) {
+            System.err.println("--checkpoint and --resume only work with tapes on the heap");
+            System.exit(EXIT_FAILED);
+        }
+
+        TieringListener listener = verbose ? TieringListener.log(System.err) : TieringListener.NONE;
+        Engine forced = engine.equals("auto") ? null
+                : engine.equals("memoized") ? new MemoizingInterpreter(new LoopMemo(memoCapacity))
+                : Engine.forName(engine, tierThreshold, listener);
+        Program optimized = null;
+        byte[] source = null;
+        Checkpoint resumed = null;
+        try {
+            if (profileFile != null) {
+                source = Files.readAllBytes(Paths.get(filename));
+            } else if (forced != null && !forced.isOptimizing()) {
+                optimized = ProgramLoader.loadCommands(Paths.get(filename));
+            } else if (evaluator != null) {
+                optimized = cache.load(Paths.get(filename), evaluator);
+            } else {
+                optimized = cache.load(Paths.get(filename));
+            }
         } catch (IOException e) {
             System.err.println("Error reading program file: " + e.getMessage());
+            System.exit(EXIT_FAILED);
+            return;
+        }
+        if (resumeFile != null) {
+            try {
+                resumed = Checkpoint.read(Paths.get(resumeFile));
+            } catch (IOException e) {
+                System.err.println("Error reading checkpoint: " + e.getMessage());
+                System.exit(EXIT_FAILED);
+                return;
+            }
+            resumed.checkProgram(optimized);
+        }
+
+        Budget budget = limits.start();
+        try (InputSource in = openInput(inputFile, mapInput, eofPolicy, budget);
+             BufferedOutputSink sink = openOutput(outputFile, flushPolicy,
+                     resumed != null ? resumed.getOutputPosition() : 0)) {
+            OutputSink out = limits.isLimited() ? budget.limit(sink) : sink;
+            if (profileFile != null) {
+                Profile profile = new Profiler().execute(source, tapeMode.newTape(tapeSize, cellWidth), in, out);
+                profile.writeHeatMap(System.err);
+                Files.write(Paths.get(profileFile), profile.toJson().getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            Engine selected = forced;
+            if (selected == null) {
+                EngineSelector.Choice choice = new EngineSelector(tierThreshold, listener).select(optimized, limits);
+                selected = choice.getEngine();
+                if (verbose) {
+                    System.err.println("[engine] selected " + choice);
+                }
+            } else if (verbose) {
+                System.err.println("[engine] forced " + selected.name());
+            }
+            if (verbose && selected.isOptimizing()) {
+                System.err.println(cache);
+                if (evaluator != null) {
+                    System.err.println("precomputed " + optimized.outputLength() + " bytes of output, "
+                            + optimized.size() + " instructions left to run");
+                }
+            }
+            Tape tape = tapeFile != null
+                    ? MemoryTape.map(Paths.get(tapeFile), tapeMode, tapeSize, cellWidth)
+                    : tapeStorage.newTape(tapeMode, tapeSize, cellWidth);
+
+            try {
+                if (checkpointFile != null || resumed != null) {
+                    runCheckpointed(optimized, tape, resumed, in, out, budget, checkpointFile, checkpointEvery,
+                            verbose);
+                } else {
+                    selected.execute(optimized, tape, in, out, budget);
+                }
+            } finally {
+                // frees off-heap cells and writes a mapped tape file out, even after a limit stopped the run
+                if (tape instanceof MemoryTape) {
+                    ((MemoryTape) tape).close();
+                }
+                if (verbose && selected instanceof MemoizingInterpreter) {
+                    System.err.println(((MemoizingInterpreter) selected).memo());
+                }
+            }
+            if (verbose && limits.isLimited()) {
+                System.err.println(budget.result(ExecutionResult.Status.COMPLETED, null));
+            }
+        } catch (LimitExceededException e) {
+            // the output written up to the limit was flushed when the sink was closed
+            System.err.println(budget.result(e.getStatus(), e.getMessage()));
+            System.exit(EXIT_LIMIT);
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("I/O error: " + e.getMessage());
+            System.exit(EXIT_FAILED);
         }
     }
 
 
-    // converts the contents of a file to a single string - basic version
-    private static String convertFileToProgram(String filename) throws IOException {
-        StringBuilder program = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
-            int c;
-            while ((c = reader.read()) != EOF) {
-                program.append((char) c);
+    // runs on the IR engine from the start or from resumed, saving checkpoints to checkpointFile if given
+    private static void runCheckpointed(Program program, Tape tape, Checkpoint resumed, InputSource in,
+                                        OutputSink out, Budget budget, String checkpointFile,
+                                        long checkpointEvery, boolean verbose) throws IOException {
+        Checkpointer checkpointer = new Checkpointer(checkpointFile != null ? Paths.get(checkpointFile) : null,
+                resumed, verbose ? System.err : null);
+        if (checkpointFile != null) {
+            checkpointer.onSignal("USR2");
+            if (checkpointEvery > 0) {
+                checkpointer.every(checkpointEvery * 1000);
             }
         }
-        return program.toString();
+
+        int pointer = 0;
+        int PC = 0;
+        if (resumed != null) {
+            resumed.skipInput(in);
+            tape = resumed.getTape();
+            pointer = resumed.getPointer();
+            PC = resumed.getPC();
+        }
+        new IrInterpreter().execute(program, tape, pointer, PC, checkpointer.track(in), checkpointer.track(out),
+                budget, checkpointer);
+        checkpointer.finish();
     }
 
-    // converts the contents of a file to a single string, ignoring comments starting with # ( even special characters)
-    private static String convertFileToProgram2(String filename) throws IOException {
-        StringBuilder program = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
-            int c;
-            boolean inComment = false;
-
-            while ((c = reader.read()) != EOF) {
-                char currentChar = (char) c;
-
-                if (currentChar == '#') {
-                    inComment = true;
-                } else if (currentChar == '\n') {
-                    inComment = false;
-                } else if (!inComment) {
-                    program.append(currentChar);
+    // runs every program of a batch directory or manifest and reports one line per run
+    // returns whether every run completed
+    private static boolean runBatch(BatchRunner runner, Path batch, String batchOutput) {
+        try {
+            long start = System.nanoTime();
+            List<BatchResult> results = runner.run(BatchRunner.loadTasks(batch));
+            long elapsed = System.nanoTime() - start;
+
+            int failed = 0;
+            for (BatchResult result : results) {
+                System.out.println(result);
+                if (!result.isSuccess()) {
+                    failed++;
+                }
+                if (batchOutput != null) {
+                    Path output = Paths.get(batchOutput, result.getTask().getName().replaceAll("[^A-Za-z0-9._-]", "_") + ".out");
+                    Files.createDirectories(output.getParent());
+                    Files.write(output, result.getOutput());
                 }
             }
+            System.out.println(results.size() + " runs, " + failed + " failed, " + elapsed / 1_000_000 + " ms");
+            return failed == 0;
+        } catch (IOException e) {
+            System.err.println("Error running batch: " + e.getMessage());
+            return false;
         }
-        return program.toString();
     }
 
+    // runs one program against every file of a directory and reports one line per input
+    // returns whether every run completed
+    private static boolean runInputs(String filename, Path directory, String batchOutput, int workers, TapeMode tapeMode,
+                                  int tapeSize, CellWidth cellWidth, EofPolicy eofPolicy, ExecutionLimits limits,
+                                  ProgramCache cache, PartialEvaluator evaluator, boolean verbose) {
+        try {
+            Program program = evaluator != null
+                    ? cache.load(Paths.get(filename), evaluator)
+                    : cache.load(Paths.get(filename));
+            List<Path> files = new ArrayList<>();
+            try (Stream<Path> list = Files.list(directory)) {
+                list.filter(Files::isRegularFile).sorted().forEach(files::add);
+            }
+            List<byte[]> inputs = new ArrayList<>(files.size());
+            for (Path file : files) {
+                inputs.add(Files.readAllBytes(file));
+            }
 
-    private static void execute(String program) {
-        byte[] memory = new byte[MEMORY_SIZE];
-        int pointer = 0; // Data Pointer
-        int PC = 0; // Program Counter
-
-        BufferedReader input = new BufferedReader(new InputStreamReader(System.in));
+            long start = System.nanoTime();
+            ParallelRunner runner = new ParallelRunner(program, tapeMode, tapeSize, cellWidth, eofPolicy, limits);
+            if (verbose) {
+                System.err.println(runner.isCompiled() ? "[engine] compiled once for all inputs"
+                        : "[engine] too large to compile, every input runs in the IR interpreter");
+            }
+            List<RunResult> results = runner.run(inputs, workers);
+            long elapsed = System.nanoTime() - start;
 
-        try {
-            while (PC < program.length()) {
-                char instruction = program.charAt(PC);
-
-                switch (instruction) {
-                    case '>':
-                        // increment the data pointer; move to the next cell
-                        pointer = (pointer + 1) % MEMORY_SIZE; // wrap around if overflow
-                        break;
-                    case '<':
-                        // decrement the data pointer; move to the previous cell
-                        pointer = (pointer - 1 + MEMORY_SIZE) % MEMORY_SIZE; // wrap around if overflow
-                        break;
-                    case '+':
-                        // increment the byte at the pointer
-                        memory[pointer]++;
-                        break;
-                    case '-':
-                        // decrement the byte at the pointer
-                        memory[pointer]--;
-                        break;
-                    case '.':
-                        // output the byte at the pointer
-                        System.out.print((char) (memory[pointer] & 0xFF));
-                        break;
-                    case ',':
-                        // input a byte and store it at the pointer
-                        int inputByte = input.read();
-                        memory[pointer] = (byte) (inputByte == EOF ? 0 : inputByte);
-                        break;
-                    case '[':
-                        // if the byte at the pointer is zero, jump forward to the matching ]
-                        if (memory[pointer] == 0) {
-                            int bracketCount = 1;
-                            while (bracketCount > 0) {
-                                PC++;
-                                if (PC >= program.length()) {
-                                    throw new RuntimeException("Unmatched [ bracket");
-                                }
-                                char c = program.charAt(PC);
-                                if (c == '[') bracketCount++;
-                                else if (c == ']') bracketCount--;
-                            }
-                        }
-                        break;
-                    case ']':
-                        // if the byte at the data pointer is nonzero, jump back to the matching [
-                        if (memory[pointer] != 0) {
-                            int bracketCount = 1;
-                            while (bracketCount > 0) {
-                                PC--;
-                                if (PC < 0) {
-                                    throw new RuntimeException("Unmatched ] bracket");
-                                }
-                                char c = program.charAt(PC);
-                                if (c == ']') bracketCount++;
-                                else if (c == '[') bracketCount--;
-                            }
-                        }
-                        break;
+            int failed = 0;
+            for (int i = 0; i < results.size(); i++) {
+                RunResult result = results.get(i);
+                System.out.println(files.get(i).getFileName() + ": " + result);
+                if (!result.isSuccess()) {
+                    failed++;
+                }
+                if (batchOutput != null) {
+                    Path output = Paths.get(batchOutput, files.get(i).getFileName() + ".out");
+                    Files.createDirectories(output.getParent());
+                    Files.write(output, result.getOutput());
                 }
-
-                PC++;
             }
+            System.out.println(results.size() + " runs, " + failed + " failed, " + elapsed / 1_000_000 + " ms");
+            return failed == 0;
         } catch (IOException e) {
-            System.err.println("Error reading input: " + e.getMessage());
+            System.err.println("Error running inputs: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // program input comes from stdin, or from a file that is read in blocks or memory-mapped
+    // under a time limit stdin is read through its channel, which a read waiting past the limit is
+    // interrupted out of
+    private static InputSource openInput(String inputFile, boolean mapInput, EofPolicy eofPolicy, Budget budget)
+            throws IOException {
+        if (inputFile == null && budget.nanosLeft() != Long.MAX_VALUE) {
+            Thread reader = Thread.currentThread();
+            FileChannel stdin = new FileInputStream(FileDescriptor.in).getChannel();
+            return new BufferedInputSource(new TimedInputStream(Channels.newInputStream(stdin), 0, budget,
+                    reader::interrupt), eofPolicy);
+        }
+        if (inputFile == null) {
+            return new BufferedInputSource(new FileInputStream(FileDescriptor.in), eofPolicy);
+        }
+        if (mapInput) {
+            return new MappedInputSource(Paths.get(inputFile), eofPolicy);
+        }
+        return new BufferedInputSource(FileChannel.open(Paths.get(inputFile), StandardOpenOption.READ), eofPolicy);
+    }
+
+    // program output goes to stdout, or straight into a file through its FileChannel
+    // a file is cut back to position bytes, which a resumed run had written before its checkpoint
+    private static BufferedOutputSink openOutput(String outputFile, FlushPolicy flushPolicy, long position)
+            throws IOException {
+        if (outputFile == null) {
+            return new BufferedOutputSink(new FileOutputStream(FileDescriptor.out), flushPolicy);
         }
+        FileChannel channel = FileChannel.open(Paths.get(outputFile), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.truncate(position);
+        channel.position(position);
+        return new BufferedOutputSink(channel, flushPolicy);
     }
 }
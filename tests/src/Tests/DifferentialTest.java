@@ -0,0 +1,268 @@
+package Tests;
+
+import Execution.Budget;
+import Execution.BufferedInputSource;
+import Execution.BufferedOutputSink;
+import Execution.CellWidth;
+import Execution.Engine;
+import Execution.EofPolicy;
+import Execution.ExecutionLimits;
+import Execution.ExecutionResult;
+import Execution.FlushPolicy;
+import Execution.LimitExceededException;
+import Execution.Optimizer;
+import Execution.PartialEvaluator;
+import Execution.Program;
+import Execution.ProgramLoader;
+import Execution.Tape;
+import Execution.TapeMode;
+import Execution.TieringListener;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+/*
+ * Checks every engine against the reference engine, which runs the program one command at a time.
+ * The programs are the ones bundled in src/BrainFuckPrograms and small random ones, and each runs on
+ * every TapeMode and CellWidth, both as optimized and after PartialEvaluator has run its prefix.
+ * A run has to end with the same status, output, instruction count and tape as the reference run:
+ *   - a run stopped by its instruction limit is only compared on status and output, since engines
+ *     stop at the end of a loop iteration and may have changed more of the tape by then
+ *   - a precomputed run is not compared on its instruction count, as its prefix is not run again
+ *   - when the reference steps off a BOUNDED tape, an optimized engine may not, since Optimizer
+ *     folds away pointer moves that cancel out; such a run only has to write the same output first
+ * Run it from the project directory; it prints every mismatch and exits with status 1 if any.
+ *   java Tests.DifferentialTest [random programs] [seed]
+ */
+public final class DifferentialTest {
+    private static final String[] ENGINES = {"ir", "compiled", "tiered", "memoized"};
+    private static final int TIER_THRESHOLD = 2; // low, so that the small programs compile their loops
+    private static final int MEMORY_SIZE = 30000;
+    private static final long PROGRAM_LIMIT = 50_000_000;
+    private static final long RANDOM_LIMIT = 100_000;
+    // cells on each side of the start of an UNBOUNDED tape that are compared
+    private static final int UNBOUNDED_WINDOW = 64;
+    private static final int MAX_REPORTED = 20;
+
+    private int runs = 0;
+    private int mismatches = 0;
+
+    public static void main(String[] args) throws IOException {
+        int programs = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+
+        DifferentialTest test = new DifferentialTest();
+        test.bundled("Testing.bf", "");
+        test.bundled("program.bf", "hi");
+        test.bundled("GameOfLife.bf", "ab\ncd\n\n\nq\n"); // toggle two cells, step three generations and quit
+        test.random(programs, new Random(seed));
+
+        System.out.println(test.runs + " runs, " + test.mismatches + " mismatches");
+        if (test.mismatches > 0) {
+            System.exit(1);
+        }
+    }
+
+    private void bundled(String name, String input) throws IOException {
+        Path file = Paths.get("src/BrainFuckPrograms", name);
+        Program commands = ProgramLoader.loadCommands(file);
+        Program optimized = Optimizer.optimize(ProgramLoader.load(file));
+        byte[] bytes = input.getBytes(StandardCharsets.US_ASCII);
+        for (TapeMode mode : TapeMode.values()) {
+            for (CellWidth width : CellWidth.values()) {
+                Case test = new Case(name, mode, MEMORY_SIZE, width, EofPolicy.ZERO, bytes, PROGRAM_LIMIT);
+                check(test, commands, optimized);
+            }
+        }
+    }
+
+    private void random(int programs, Random random) {
+        for (int i = 0; i < programs; i++) {
+            String source = generate(random, 0, 3 + random.nextInt(12));
+            Program commands = Program.parseCommands(source);
+            Program optimized = Optimizer.optimize(Program.parse(source));
+            byte[] input = new byte[random.nextInt(4)];
+            random.nextBytes(input);
+            EofPolicy eof = EofPolicy.values()[random.nextInt(EofPolicy.values().length)];
+            for (TapeMode mode : TapeMode.values()) {
+                // a WRAPPING tape smaller than the span of a loop makes its cells alias each other,
+                // which Optimizer does not model, so those only get small BOUNDED tapes
+                int size = mode == TapeMode.WRAPPING ? 40 + random.nextInt(8) : 1 + random.nextInt(8);
+                for (CellWidth width : CellWidth.values()) {
+                    check(new Case(source, mode, size, width, eof, input, RANDOM_LIMIT), commands, optimized);
+                }
+            }
+        }
+    }
+
+    // up to length commands, with loops nested at most three deep; some loops start as [- or [+ and
+    // some move the loop cell to a neighbour, so that Optimizer finds the idioms it rewrites
+    private static String generate(Random random, int depth, int length) {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            int kind = random.nextInt(12);
+            if (kind < 3) {
+                source.append(random.nextBoolean() ? '+' : '-');
+            } else if (kind < 6) {
+                source.append(random.nextBoolean() ? '>' : '<');
+            } else if (kind == 6) {
+                source.append('.');
+            } else if (kind == 7) {
+                source.append(',');
+            } else if (kind == 8) {
+                String away = random.nextBoolean() ? ">" : "<";
+                String back = away.equals(">") ? "<" : ">";
+                int distance = 1 + random.nextInt(3);
+                source.append("[-").append(away.repeat(distance)).append(random.nextBoolean() ? "+" : "--")
+                        .append(back.repeat(distance)).append(']');
+            } else if (kind < 11 && depth < 3) {
+                source.append('[');
+                if (random.nextInt(3) == 0) {
+                    source.append(random.nextBoolean() ? '-' : '+');
+                }
+                source.append(generate(random, depth + 1, 1 + random.nextInt(6))).append(']');
+            } else {
+                source.append('-');
+            }
+        }
+        return source.toString();
+    }
+
+    private void check(Case test, Program commands, Program optimized) {
+        Outcome expected = run(test, "reference", commands, test.limit);
+        for (String engine : ENGINES) {
+            compare(test, engine, expected, run(test, engine, optimized, test.limit), true);
+        }
+
+        // a precomputed run does less work, so it would not stop where a limited reference run did
+        if (expected.status == ExecutionResult.Status.INSTRUCTION_LIMIT) {
+            return;
+        }
+        Program evaluated = new PartialEvaluator(test.mode, test.size, test.width, test.limit).evaluate(optimized);
+        for (String engine : ENGINES) {
+            // the tape set up by the evaluated program is charged for, which can cost more than it saves
+            Outcome actual = run(test, engine, evaluated, 2 * test.limit + evaluated.size());
+            compare(test, engine + " precomputed", expected, actual, false);
+        }
+    }
+
+    private Outcome run(Case test, String engine, Program program, long limit) {
+        Tape tape = test.mode.newTape(test.size, test.width);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        BufferedOutputSink out = new BufferedOutputSink(output, FlushPolicy.EXIT);
+        BufferedInputSource in = new BufferedInputSource(new ByteArrayInputStream(test.input), test.eof);
+        Budget budget = new ExecutionLimits(limit, 0, 0).start();
+        ExecutionResult.Status status;
+        try {
+            Engine.forName(engine, TIER_THRESHOLD, TieringListener.NONE).execute(program, tape, in, out, budget);
+            status = ExecutionResult.Status.COMPLETED;
+        } catch (LimitExceededException e) {
+            status = e.getStatus();
+        } catch (RuntimeException e) {
+            status = ExecutionResult.Status.FAILED;
+        }
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new RuntimeException(e); // cannot happen, the output is kept in memory
+        }
+        runs++;
+        return new Outcome(status, output.toByteArray(), budget.instructions(), cells(tape));
+    }
+
+    private static int[] cells(Tape tape) {
+        if (tape.mode() == TapeMode.UNBOUNDED) {
+            int[] cells = new int[2 * UNBOUNDED_WINDOW];
+            for (int i = 0; i < cells.length; i++) {
+                cells[i] = tape.get(i - UNBOUNDED_WINDOW);
+            }
+            return cells;
+        }
+        int[] cells = new int[tape.size()];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = tape.get(i);
+        }
+        return cells;
+    }
+
+    private void compare(Case test, String engine, Outcome expected, Outcome actual, boolean counted) {
+        String difference = null;
+        if (expected.status == ExecutionResult.Status.FAILED && test.mode == TapeMode.BOUNDED) {
+            if (!startsWith(actual.output, expected.output)) {
+                difference = "output differs from byte " + Arrays.mismatch(actual.output, expected.output)
+                        + " on, before the reference failed";
+            }
+        } else if (actual.status != expected.status) {
+            difference = "status " + actual.status + ", expected " + expected.status;
+        } else if (!Arrays.equals(actual.output, expected.output)) {
+            difference = "output differs from byte " + Arrays.mismatch(actual.output, expected.output)
+                    + " on, " + actual.output.length + " bytes where " + expected.output.length + " were expected";
+        } else if (expected.status == ExecutionResult.Status.COMPLETED) {
+            if (counted && actual.instructions != expected.instructions) {
+                difference = "instructions " + actual.instructions + ", expected " + expected.instructions;
+            } else if (!Arrays.equals(actual.cells, expected.cells)) {
+                difference = "tape differs from the reference";
+            }
+        }
+
+        if (difference != null) {
+            if (mismatches < MAX_REPORTED) {
+                System.out.println(engine + " on " + test + ": " + difference);
+            }
+            mismatches++;
+        }
+    }
+
+    private static boolean startsWith(byte[] bytes, byte[] prefix) {
+        return bytes.length >= prefix.length && Arrays.equals(bytes, 0, prefix.length, prefix, 0, prefix.length);
+    }
+
+    // one program with the tape, input and limit it runs with
+    private static final class Case {
+        final String program;
+        final TapeMode mode;
+        final int size;
+        final CellWidth width;
+        final EofPolicy eof;
+        final byte[] input;
+        final long limit;
+
+        Case(String program, TapeMode mode, int size, CellWidth width, EofPolicy eof, byte[] input, long limit) {
+            this.program = program;
+            this.mode = mode;
+            this.size = size;
+            this.width = width;
+            this.eof = eof;
+            this.input = input;
+            this.limit = limit;
+        }
+
+        @Override
+        public String toString() {
+            String tape = mode == TapeMode.UNBOUNDED ? "UNBOUNDED tape of " : mode + " tape of " + size + " ";
+            return program + " (" + tape + width + " cells, input "
+                    + Arrays.toString(input) + ", EOF " + eof + ")";
+        }
+    }
+
+    // how one run ended
+    private static final class Outcome {
+        final ExecutionResult.Status status;
+        final byte[] output;
+        final long instructions;
+        final int[] cells;
+
+        Outcome(ExecutionResult.Status status, byte[] output, long instructions, int[] cells) {
+            this.status = status;
+            this.output = output;
+            this.instructions = instructions;
+            this.cells = cells;
+        }
+    }
+}